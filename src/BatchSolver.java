@@ -0,0 +1,322 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * <p>
+ * This class is a second driver of this application, which solves a whole
+ * list of puzzles in a single JVM instead of starting one per puzzle. The
+ * puzzles are listed in a <i>manifest</i> file, one per line, as the names of
+ * an initial configuration file and of a goal configuration file separated by
+ * whitespace. Relative names are taken relative to the directory of the
+ * manifest, and blank lines and lines starting with '#' are ignored.
+ * </p>
+ * 
+ * <p>
+ * Every puzzle is read on the main thread first, so that the Point pool can be
+ * set up once for the biggest Tray of the list (see <b>Point.preparePool</b>).
+ * The puzzles are then solved independently of each other by
+ * <b>Solver.solve</b> on a fixed pool of threads, and the move trace of each
+ * is written to a file of its own in the output directory, named
+ * "&lt;line&gt;.&lt;initial file&gt;.&lt;goal file&gt;.out" after the
+ * manifest line and the two configuration files. A puzzle without a solution
+ * gets an empty file, just like the output of <b>Solver.main</b>.
+ * </p>
+ * 
+ * <p>
+ * Once all the puzzles are solved, a summary line per puzzle is printed in
+ * the order of the manifest.
+ * </p>
+ */
+public class BatchSolver {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The main method of the batch driver.
+	 * 
+	 * @param args
+	 *            - the command-line arguments:
+	 *            <p>
+	 *            <ul>
+	 *            <li>First argument (optional): the debugging flags, in the
+	 *            format described in the Javadoc on <b>Solver.main</b>. T, S
+	 *            and M add the time taken, the number of configurations
+	 *            visited and the number of moves to the summary line of every
+	 *            puzzle.</li>
+	 *            <li>Second argument: the name of the manifest file</li>
+	 *            <li>Third argument: the name of the directory to write the
+	 *            move traces to; it is created if it does not exist</li>
+	 *            <li>Fourth argument (optional): the number of puzzles to
+	 *            solve at once; by default, the number of available cores</li>
+	 *            </ul>
+	 *            </p>
+	 */
+	public static void main(String[] args) {
+		int first = 0;
+		if (args.length > 0 && args[0].startsWith("-o")) {
+			Solver.parseFlags(args[0]);
+			first = 1;
+		}
+		if (args.length - first < 2 || args.length - first > 3) {
+			System.out
+					.println("Usage: BatchSolver [-o[flags]] manifest outputDirectory [numThreads]. Refer to the Javadoc on BatchSolver.main for details.");
+			System.exit(1);
+		}
+
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		if (args.length - first == 3) {
+			try {
+				numThreads = Integer.parseInt(args[first + 2]);
+			} catch (NumberFormatException nfe) {
+				numThreads = 0;
+			}
+			if (numThreads < 1) {
+				System.out
+						.println("The number of threads must be a positive integer.");
+				System.exit(1);
+			}
+		}
+
+		File manifest = new File(args[first]);
+		File outputDirectory = new File(args[first + 1]);
+		List<Job> jobs = null;
+		try {
+			jobs = readManifest(manifest, outputDirectory);
+		} catch (IOException ioe) {
+			System.out.println("Could not open file!");
+			System.exit(1);
+		}
+		outputDirectory.mkdirs();
+
+		loadAll(jobs);
+
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<String>> summaries = new ArrayList<Future<String>>();
+			for (Job job : jobs) {
+				summaries.add(pool.submit(job));
+			}
+			for (int k = 0; k < jobs.size(); k++) {
+				String summary;
+				try {
+					summary = summaries.get(k).get();
+				} catch (ExecutionException ee) {
+					summary = "error: " + ee.getCause();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					summary = "interrupted";
+				}
+				System.out.println(jobs.get(k).name + ": " + summary);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads the puzzles listed in the given manifest, as described in the
+	 * Javadoc on this class. Their files are not read yet.
+	 * 
+	 * @param manifest
+	 *            - the manifest file
+	 * @param outputDirectory
+	 *            - the directory to write the move traces to
+	 * @return a Job for every puzzle, in the order of the manifest
+	 * @throws IOException
+	 *             when the manifest cannot be read
+	 */
+	private static List<Job> readManifest(File manifest, File outputDirectory)
+			throws IOException {
+		File directory = manifest.getAbsoluteFile().getParentFile();
+		List<Job> jobs = new ArrayList<Job>();
+		int lineNumber = 0;
+		for (String line : Files.readAllLines(manifest.toPath())) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] names = line.split("\\s+");
+			File initFile = resolve(directory, names[0]);
+			File goalFile = (names.length > 1) ? resolve(directory, names[1])
+					: null;
+			File outFile = new File(outputDirectory, lineNumber + "."
+					+ initFile.getName() + "."
+					+ (goalFile == null ? "" : goalFile.getName()) + ".out");
+			Job job = new Job(line, initFile, goalFile, outFile);
+			if (names.length != 2) {
+				job.error = "a manifest line must name exactly two files";
+			}
+			jobs.add(job);
+		}
+		return jobs;
+	}
+
+	/**
+	 * Returns the file with the given name, taken relative to the given
+	 * directory if it is not absolute.
+	 * 
+	 * @param directory
+	 *            - the directory to resolve relative names against
+	 * @param name
+	 *            - the name of the file
+	 * @return the file with the given name
+	 */
+	private static File resolve(File directory, String name) {
+		File f = new File(name);
+		return f.isAbsolute() ? f : new File(directory, name);
+	}
+
+	/**
+	 * Reads the Tray and the desired Blocks of every Job, on the calling
+	 * thread. All the Tray dimensions are read first, so that the Point pool
+	 * is prepared for the biggest Tray before any Block is created. A Job
+	 * whose files cannot be read or parsed gets an error instead.
+	 * 
+	 * @param jobs
+	 *            - the Jobs to load
+	 */
+	private static void loadAll(List<Job> jobs) {
+		int maxRow = 0;
+		int maxCol = 0;
+		for (Job job : jobs) {
+			if (job.error != null) {
+				continue;
+			}
+			try {
+				job.input = new PuzzleParser(PuzzleParser.readFile(job.initFile
+						.getPath()));
+				job.output = new PuzzleParser(PuzzleParser.readFile(job.goalFile
+						.getPath()));
+				job.rowSize = job.input.nextShort();
+				job.colSize = job.input.nextShort();
+				job.input.skipLine();
+				maxRow = Math.max(maxRow, job.rowSize);
+				maxCol = Math.max(maxCol, job.colSize);
+			} catch (IOException ioe) {
+				job.error = "could not open file";
+			} catch (IllegalArgumentException iae) {
+				job.error = iae.getMessage();
+			}
+		}
+
+		Point.preparePool(maxRow + 1, maxCol + 1);
+
+		for (Job job : jobs) {
+			if (job.error != null) {
+				continue;
+			}
+			try {
+				job.initialTray = new Tray(job.rowSize, job.colSize,
+						job.input.remainingBlocks());
+				job.desiredBlocks = job.output.remainingBlocks();
+			} catch (RuntimeException re) {
+				job.error = re.toString();
+			}
+			job.input = null;
+			job.output = null;
+		}
+	}
+
+	// ///////////////////// static members end ///////////////////////
+
+	/**
+	 * A Job is a single puzzle of the manifest. Running it solves the puzzle,
+	 * writes its move trace to its output file, and returns its summary line.
+	 */
+	private static class Job implements Callable<String> {
+
+		/**
+		 * Represents the manifest line of this Job.
+		 */
+		final String name;
+
+		/**
+		 * Represents the initial configuration file.
+		 */
+		final File initFile;
+
+		/**
+		 * Represents the goal configuration file.
+		 */
+		final File goalFile;
+
+		/**
+		 * Represents the file to write the move trace to.
+		 */
+		final File outFile;
+
+		/**
+		 * Represent the parsers of the two configuration files, between the
+		 * reading of the Tray dimensions and the reading of the Blocks.
+		 */
+		PuzzleParser input, output;
+
+		/**
+		 * Represent the dimensions of the Tray.
+		 */
+		short rowSize, colSize;
+
+		/**
+		 * Represents the initial Tray configuration.
+		 */
+		Tray initialTray;
+
+		/**
+		 * Represents the collection of blocks in the desired final Tray
+		 * configuration.
+		 */
+		List<Block> desiredBlocks;
+
+		/**
+		 * Represents why this Job cannot be run, or <b>null</b> if it can.
+		 */
+		String error;
+
+		Job(String name, File initFile, File goalFile, File outFile) {
+			this.name = name;
+			this.initFile = initFile;
+			this.goalFile = goalFile;
+			this.outFile = outFile;
+		}
+
+		@Override
+		public String call() throws IOException {
+			if (error != null) {
+				return "error: " + error;
+			}
+			long start = System.nanoTime();
+			SolveResult result;
+			try (OutputStream stream = new FileOutputStream(outFile)) {
+				MoveTraceWriter out = new MoveTraceWriter(stream);
+				result = Solver.solve(initialTray, desiredBlocks, out);
+				out.flush();
+			} catch (IllegalStateException ise) {
+				return "The following invariant on a Tray has been violated: "
+						+ ise.getMessage();
+			}
+			// the Trays are not needed any more once the puzzle is solved
+			initialTray = null;
+			desiredBlocks = null;
+
+			StringBuilder summary = new StringBuilder();
+			summary.append(result.isSolved() ? "solved" : "no solution");
+			if (result.isSolved() && Solver.willPrintNumMoves()) {
+				summary.append(", moves: ").append(result.numMoves);
+			}
+			if (Solver.willPrintNumStates()) {
+				summary.append(", configurations visited: ").append(
+						result.numStates);
+			}
+			if (Solver.willPrintTime()) {
+				summary.append(", finished in: ")
+						.append((System.nanoTime() - start) / 1000000000.0)
+						.append(" seconds");
+			}
+			return summary.append(" (").append(outFile.getName()).append(")")
+					.toString();
+		}
+	}
+}
@@ -0,0 +1,204 @@
+import java.util.*;
+
+/**
+ * <p>
+ * A BidirectionalSearch performs breadth-first search from both ends of a
+ * puzzle at once: forwards from the initial Tray and backwards from the goal
+ * Tray. This is only possible when the goal file lists every Block of the
+ * Tray, so that the goal is a single concrete configuration (see
+ * <b>goalTrayOf</b>). Since every move is reversible, a configuration reached
+ * backwards from the goal can be turned into a path towards the goal by
+ * playing the backward moves in reverse.
+ * </p>
+ * 
+ * <p>
+ * Each round expands one whole level of the smaller of the two frontiers. The
+ * search stops as soon as a configuration generated from one end has already
+ * been seen from the other end. For a solution of depth d and a branching
+ * factor of b, this takes roughly 2*b^(d/2) expansions instead of b^d.
+ * </p>
+ */
+public class BidirectionalSearch {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * Returns the goal Tray described by the given desired Blocks, if they
+	 * describe a single concrete configuration reachable in principle from the
+	 * given initial Tray: the desired Blocks must have exactly the same shapes
+	 * as the initial Tray's Blocks, must fit in the Tray and must not overlap.
+	 * Otherwise <b>null</b> is returned.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @return the goal Tray, or null if the goal is not fully specified
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public static Tray goalTrayOf(Tray initialTray,
+			Collection<Block> desiredBlocks) {
+		if (desiredBlocks.size() != initialTray.numBlocks) {
+			return null;
+		}
+
+		List<Integer> initialShapes = new ArrayList<Integer>();
+		for (int i = 0; i < initialTray.numBlocks; i++) {
+			initialShapes.add(initialTray.getBlock(i).shapeId());
+		}
+		List<Integer> desiredShapes = new ArrayList<Integer>();
+		for (Block b : desiredBlocks) {
+			desiredShapes.add(b.shapeId());
+		}
+		Collections.sort(initialShapes);
+		Collections.sort(desiredShapes);
+		if (!initialShapes.equals(desiredShapes)) {
+			return null;
+		}
+
+		boolean[][] occupied = new boolean[initialTray.rowSize][initialTray.colSize];
+		for (Block b : desiredBlocks) {
+			Point ul = b.getUpperLeft();
+			Point lr = b.getLowerRight();
+			if (lr.rowIdx >= initialTray.rowSize
+					|| lr.colIdx >= initialTray.colSize) {
+				return null;
+			}
+			for (int r = ul.rowIdx; r <= lr.rowIdx; r++) {
+				for (int c = ul.colIdx; c <= lr.colIdx; c++) {
+					if (occupied[r][c]) {
+						return null;
+					}
+					occupied[r][c] = true;
+				}
+			}
+		}
+		return new Tray(initialTray.rowSize, initialTray.colSize, desiredBlocks);
+	}
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the elements reached forwards from the initial Tray, keyed by
+	 * the encodings of their Trays (see EncodingKey).
+	 */
+	private final Map<EncodingKey, SolveFringeElement> forwardSeen = new HashMap<EncodingKey, SolveFringeElement>();
+
+	/**
+	 * Represents the elements reached backwards from the goal Tray, keyed by
+	 * the encodings of their Trays.
+	 */
+	private final Map<EncodingKey, SolveFringeElement> backwardSeen = new HashMap<EncodingKey, SolveFringeElement>();
+
+	/**
+	 * Represents the current level of the forward search.
+	 */
+	private List<SolveFringeElement> forwardLevel = new ArrayList<SolveFringeElement>();
+
+	/**
+	 * Represents the current level of the backward search.
+	 */
+	private List<SolveFringeElement> backwardLevel = new ArrayList<SolveFringeElement>();
+
+	/**
+	 * Initializes a search between the given initial and goal Trays. The two
+	 * Trays must hold Blocks of the same shapes.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration to start the search process
+	 *            at
+	 * @param goalTray
+	 *            - the goal Tray configuration, as returned by
+	 *            <b>goalTrayOf</b>
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public BidirectionalSearch(Tray initialTray, Tray goalTray) {
+		SolveFringeElement start = new SolveFringeElement(initialTray, null,
+				null, null);
+		SolveFringeElement goal = new SolveFringeElement(goalTray, null, null,
+				null);
+		forwardSeen.put(new EncodingKey(initialTray.encode()), start);
+		backwardSeen.put(new EncodingKey(goalTray.encode()), goal);
+		forwardLevel.add(start);
+		backwardLevel.add(goal);
+	}
+
+	/**
+	 * Runs the search, and writes the solution to the given MoveTraceWriter
+	 * in the format described in the Javadoc on MoveTraceWriter if there is
+	 * one. The writer is not flushed.
+	 * 
+	 * @param out
+	 *            - the MoveTraceWriter to write the solution to
+	 * @return the number of moves in the solution, or -1 if there is no
+	 *         solution
+	 * @throws IllegalStateException
+	 *             when any of the Trays in the search process fails to keep its
+	 *             invariants (only when Tray.checkInvariants is set to true)
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public int search(MoveTraceWriter out) {
+		if (out == null) {
+			throw new NullPointerException();
+		}
+		SolveFringeElement start = forwardLevel.get(0);
+		SolveFringeElement meeting = backwardSeen.get(new EncodingKey(
+				start.tray.encode()));
+		if (meeting != null) {
+			return start.writeMoveTrace(out, meeting);
+		}
+
+		List<SolveFringeElement> children = new ArrayList<SolveFringeElement>();
+		while (!forwardLevel.isEmpty() && !backwardLevel.isEmpty()) {
+			boolean forwards = forwardLevel.size() <= backwardLevel.size();
+			Map<EncodingKey, SolveFringeElement> ownSeen = forwards ? forwardSeen
+					: backwardSeen;
+			Map<EncodingKey, SolveFringeElement> otherSeen = forwards ? backwardSeen
+					: forwardSeen;
+			List<SolveFringeElement> nextLevel = new ArrayList<SolveFringeElement>();
+
+			for (SolveFringeElement elem : forwards ? forwardLevel
+					: backwardLevel) {
+				children.clear();
+				Solver.expand(elem, children);
+				for (SolveFringeElement child : children) {
+					EncodingKey key = new EncodingKey(child.tray.encode());
+					if (ownSeen.containsKey(key)) {
+						continue;
+					}
+					SolveFringeElement other = otherSeen.get(key);
+					if (other != null) {
+						return forwards ? child.writeMoveTrace(out, other)
+								: other.writeMoveTrace(out, child);
+					}
+					ownSeen.put(key, child);
+					nextLevel.add(child);
+				}
+			}
+
+			if (forwards) {
+				forwardLevel = nextLevel;
+			} else {
+				backwardLevel = nextLevel;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the number of configurations reached from either end so far.
+	 * 
+	 * @return the number of configurations reached from either end so far
+	 */
+	public long numSeen() {
+		return (long) forwardSeen.size() + backwardSeen.size();
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
@@ -1,4 +1,4 @@
-import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * <p>
@@ -62,8 +62,15 @@ public class Block {
 	 * distinct blocks fitting in a 256X256 Tray) and thus too much memory would
 	 * have to be initialized.
 	 * </p>
+	 * 
+	 * <p>
+	 * The map is a ConcurrentHashMap, so that search processes that expand
+	 * configurations on several threads at once (see
+	 * ParallelBreadthFirstSearch) can share the pool safely. Its lookups do
+	 * not lock, so single-threaded searches pay next to nothing for this.
+	 * </p>
 	 */
-	private static Map<Integer, Block> pool = new HashMap<Integer, Block>();
+	private static ConcurrentMap<Integer, Block> pool = new ConcurrentHashMap<Integer, Block>();
 
 	/**
 	 * <p>
@@ -134,12 +141,16 @@ public class Block {
 		int hash = computePerfectHash(upperLeft.rowIdx, upperLeft.colIdx,
 				(short) width, (short) height);
 
-		if (!pool.containsKey(hash)) {
-			Block b = new Block(upperLeft, (short) width, (short) height);
-			pool.put(hash, b);
+		Block b = pool.get(hash);
+		if (b == null) {
+			b = new Block(upperLeft, (short) width, (short) height);
+			Block raced = pool.putIfAbsent(hash, b);
+			if (raced != null) { // another thread has pooled it first
+				b = raced;
+			}
 		}
 
-		return pool.get(hash);
+		return b;
 	}
 
 	/**
@@ -282,6 +293,18 @@ public class Block {
 				.getInstance(upperLeft.rowIdx, upperLeft.colIdx + width - 1);
 	}
 
+	/**
+	 * Returns an identifier of the shape of this Block, regardless of its
+	 * position. Two Blocks have the same shape identifier if and only if they
+	 * have the same width and height, which makes them interchangeable within
+	 * a Tray. Shape identifiers are ordered by height first, then by width.
+	 * 
+	 * @return an identifier of the shape of this Block
+	 */
+	public int shapeId() {
+		return ((height - 1) << 16) | (width - 1);
+	}
+
 	/**
 	 * Returns a String representation in the format of
 	 * "ULrow ULcol LRrow LRcol".
@@ -0,0 +1,316 @@
+import java.util.concurrent.atomic.*;
+
+/**
+ * <p>
+ * A ConcurrentConfigurationSet is like a ConfigurationSet, except that many
+ * threads can add to it at once, without any lock. It stores the compact
+ * encodings returned by <b>Tray.encode()</b> back to back in a <b>long</b>
+ * array used as an open-addressing hash table with linear probing, so that
+ * there are no per-entry objects and an insertion usually touches a single
+ * cache line.
+ * </p>
+ * 
+ * <p>
+ * Every slot of the table has a state next to it. A thread inserts an
+ * encoding by claiming the first free slot of its probe sequence with a single
+ * compare-and-set, writing the encoding into it, and then publishing the slot.
+ * Two threads inserting the same encoding follow the same probe sequence, so
+ * they contend for the same free slot: the loser waits for the winner to
+ * publish, sees an equal encoding, and reports it as already present.
+ * </p>
+ * 
+ * <p>
+ * The set is split into independent segments, selected by the high bits of
+ * the hash, each with its own table and count; this keeps threads from
+ * contending on a single counter. When a segment grows past its load factor,
+ * the thread that noticed it seals every free slot of the old table (with the
+ * same compare-and-set a writer would use), copies the published encodings
+ * into a table twice as big, and installs it. Meanwhile, a thread that would
+ * claim a slot of the old table, or runs into a sealed one, retries against
+ * the new table once it is installed. Only the
+ * segment being resized is affected; the others keep taking insertions.
+ * </p>
+ * 
+ * <p>
+ * Every encoding stored in one ConcurrentConfigurationSet must have the same
+ * length (see <b>Tray.encodingLength()</b>). Since it only supports adding, it
+ * is not a ConfigurationStore; it is used by ParallelBreadthFirstSearch.
+ * </p>
+ */
+public class ConcurrentConfigurationSet {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The number of segments of every ConcurrentConfigurationSet. This must be
+	 * a power of two.
+	 */
+	private static final int NUM_SEGMENTS = 1 << 6;
+
+	/**
+	 * The number of slots that every segment starts with. This must be a power
+	 * of two.
+	 */
+	private static final int INITIAL_CAPACITY = 1 << 8;
+
+	/**
+	 * The state of a slot that no thread has claimed yet.
+	 */
+	private static final int FREE = 0;
+
+	/**
+	 * The state of a slot that a thread has claimed and is writing into.
+	 */
+	private static final int CLAIMED = 1;
+
+	/**
+	 * The state of a slot that holds a complete encoding.
+	 */
+	private static final int PUBLISHED = 2;
+
+	/**
+	 * The state of a free slot of a table that is being replaced.
+	 */
+	private static final int SEALED = 3;
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the number of <b>long</b>s in every encoding stored in this
+	 * set.
+	 */
+	private final int keyLength;
+
+	/**
+	 * Represents the current table of every segment.
+	 */
+	private final AtomicReferenceArray<Table> segments;
+
+	/**
+	 * Initializes an empty set for encodings of the given length.
+	 * 
+	 * @param keyLength
+	 *            - the number of <b>long</b>s in every encoding to be stored
+	 * @throws IllegalArgumentException
+	 *             when keyLength is negative
+	 */
+	public ConcurrentConfigurationSet(int keyLength) {
+		if (keyLength < 0) {
+			throw new IllegalArgumentException("negative key length");
+		}
+		this.keyLength = keyLength;
+		this.segments = new AtomicReferenceArray<Table>(NUM_SEGMENTS);
+		for (int i = 0; i < NUM_SEGMENTS; i++) {
+			segments.set(i, new Table(INITIAL_CAPACITY));
+		}
+	}
+
+	/**
+	 * Returns the number of encodings in this set. While other threads are
+	 * adding to the set, the result may be slightly out of date.
+	 * 
+	 * @return the number of encodings in this set
+	 */
+	public long size() {
+		long size = 0;
+		for (int i = 0; i < NUM_SEGMENTS; i++) {
+			size += segments.get(i).size.get();
+		}
+		return size;
+	}
+
+	/**
+	 * Adds the given encoding to this set, if it is not already present. The
+	 * array is copied into the table, so the caller may reuse it afterwards.
+	 * When several threads add equal encodings at once, exactly one of them is
+	 * told that the encoding was not present.
+	 * 
+	 * @param key
+	 *            - the encoding to add
+	 * @return <b>true</b> if the encoding was not in this set before
+	 * @throws IllegalArgumentException
+	 *             when the length of key is not the length of this set's
+	 *             encodings
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public boolean add(long[] key) {
+		if (key.length != keyLength) {
+			throw new IllegalArgumentException("expected a key of length "
+					+ keyLength + " but got one of length " + key.length);
+		}
+		int h = hash(key, 0);
+		int segment = h >>> (32 - Integer.numberOfTrailingZeros(NUM_SEGMENTS));
+
+		while (true) {
+			Table table = segments.get(segment);
+			int mask = table.capacity - 1;
+			int slot = h & mask;
+			boolean sealed = false;
+			while (true) {
+				int state = table.states.get(slot);
+				if (state == FREE) {
+					if (table.growing.get()) {
+						sealed = true; // no new claims on a table being replaced
+						break;
+					}
+					if (!table.states.compareAndSet(slot, FREE, CLAIMED)) {
+						continue; // lost the slot; look at it again
+					}
+					System.arraycopy(key, 0, table.keys, slot * keyLength,
+							keyLength);
+					table.states.set(slot, PUBLISHED);
+					// keeping the load factor under 3/4
+					if (table.size.incrementAndGet() * 4L > table.capacity * 3L) {
+						grow(segment, table);
+					}
+					return true;
+				}
+				if (state == CLAIMED) {
+					Thread.yield(); // waiting for the encoding to be published
+					continue;
+				}
+				if (state == SEALED) {
+					sealed = true;
+					break;
+				}
+				if (table.matches(slot, key)) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			if (sealed) {
+				while (segments.get(segment) == table) {
+					Thread.yield(); // waiting for the new table to be installed
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces the given table of the given segment with one twice as big,
+	 * unless another thread is already doing so.
+	 * 
+	 * @param segment
+	 *            - the index of the segment
+	 * @param table
+	 *            - the current table of the segment
+	 */
+	private void grow(int segment, Table table) {
+		if (!table.growing.compareAndSet(false, true)) {
+			return;
+		}
+		Table bigger = new Table(table.capacity << 1);
+		int mask = bigger.capacity - 1;
+		int count = 0;
+		for (int old = 0; old < table.capacity; old++) {
+			int state = table.states.get(old);
+			while (state != PUBLISHED) {
+				if (state == FREE
+						&& table.states.compareAndSet(old, FREE, SEALED)) {
+					break;
+				}
+				if (state == CLAIMED) {
+					Thread.yield(); // the slot is about to be published
+				}
+				state = table.states.get(old);
+			}
+			if (state != PUBLISHED) {
+				continue; // sealed
+			}
+			int slot = hash(table.keys, old * keyLength) & mask;
+			while (bigger.states.get(slot) != FREE) {
+				slot = (slot + 1) & mask;
+			}
+			System.arraycopy(table.keys, old * keyLength, bigger.keys, slot
+					* keyLength, keyLength);
+			bigger.states.set(slot, PUBLISHED);
+			count++;
+		}
+		bigger.size.set(count);
+		segments.set(segment, bigger);
+	}
+
+	/**
+	 * Returns a well-spread hash of the <b>keyLength</b> words of the given
+	 * array, starting at the given offset.
+	 * 
+	 * @param words
+	 *            - the array holding the encoding
+	 * @param offset
+	 *            - the index of the first word of the encoding
+	 * @return a hash of the encoding
+	 */
+	private int hash(long[] words, int offset) {
+		long h = 0x9E3779B97F4A7C15L;
+		for (int i = 0; i < keyLength; i++) {
+			h = (h ^ words[offset + i]) * 0xBF58476D1CE4E5B9L;
+			h ^= h >>> 31;
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+
+	/**
+	 * The hash table of one segment.
+	 */
+	private class Table {
+
+		/**
+		 * Represents the number of slots in this table. Always a power of two.
+		 */
+		final int capacity;
+
+		/**
+		 * Represents the encodings in this table. Slot i occupies the
+		 * <b>keyLength</b> words starting at index <b>i * keyLength</b>. The
+		 * words of a slot are only read once its state is PUBLISHED, which
+		 * makes them visible to the reading thread.
+		 */
+		final long[] keys;
+
+		/**
+		 * Represents the state of every slot: FREE, CLAIMED, PUBLISHED or
+		 * SEALED.
+		 */
+		final AtomicIntegerArray states;
+
+		/**
+		 * Represents the number of encodings in this table.
+		 */
+		final AtomicInteger size = new AtomicInteger();
+
+		/**
+		 * Represents whether a thread has started replacing this table.
+		 */
+		final AtomicBoolean growing = new AtomicBoolean();
+
+		Table(int capacity) {
+			this.capacity = capacity;
+			this.keys = new long[capacity * keyLength];
+			this.states = new AtomicIntegerArray(capacity);
+		}
+
+		/**
+		 * Checks whether the given published slot holds the given encoding.
+		 * 
+		 * @param slot
+		 *            - the slot to compare
+		 * @param key
+		 *            - the encoding to compare
+		 * @return whether the slot holds the encoding
+		 */
+		boolean matches(int slot, long[] key) {
+			int base = slot * keyLength;
+			for (int i = 0; i < keyLength; i++) {
+				if (keys[base + i] != key[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/**
+ * <p>
+ * A ConfigurationSet is the store that the search process uses to remember
+ * which Tray configurations it has already come across. Instead of keeping
+ * every visited Tray alive (with its list of Blocks and its occupancy bitmap),
+ * it keeps only the compact encodings returned by <b>Tray.encode()</b>.
+ * </p>
+ * 
+ * <p>
+ * All the encodings are stored back to back in a single <b>long</b> array that
+ * serves as an open-addressing hash table with linear probing. There are no
+ * per-entry objects at all; a visited configuration of a 4X5 Tray with ten
+ * Blocks costs a single <b>long</b> plus the table's slack, compared with a
+ * couple of hundred bytes for a HashSet entry pointing at a whole Tray.
+ * </p>
+ * 
+ * <p>
+ * Every encoding stored in one ConfigurationSet must have the same length,
+ * which is the case for all the Trays reachable from a single initial Tray
+ * (see <b>Tray.encodingLength()</b>).
+ * </p>
+ */
+public class ConfigurationSet implements ConfigurationStore {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The number of slots that a new ConfigurationSet starts with. This must be
+	 * a power of two.
+	 */
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the number of <b>long</b>s in every encoding stored in this
+	 * set.
+	 */
+	private final int keyLength;
+
+	/**
+	 * Represents the hash table. Slot i occupies the <b>keyLength</b> words
+	 * starting at index <b>i * keyLength</b>.
+	 */
+	private long[] keys;
+
+	/**
+	 * Represents which slots of the table are in use, one bit per slot. A
+	 * separate bitmap is needed because an all-zero encoding is legal.
+	 */
+	private long[] used;
+
+	/**
+	 * Represents the number of slots in the table. Always a power of two.
+	 */
+	private int capacity;
+
+	/**
+	 * Represents the number of encodings in this set.
+	 */
+	private int size;
+
+	/**
+	 * Initializes an empty set for encodings of the given length.
+	 * 
+	 * @param keyLength
+	 *            - the number of <b>long</b>s in every encoding to be stored
+	 * @throws IllegalArgumentException
+	 *             when keyLength is negative
+	 */
+	public ConfigurationSet(int keyLength) {
+		if (keyLength < 0) {
+			throw new IllegalArgumentException("negative key length");
+		}
+		this.keyLength = keyLength;
+		this.capacity = INITIAL_CAPACITY;
+		this.keys = new long[capacity * keyLength];
+		this.used = new long[capacity >>> 6];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the number of encodings in this set.
+	 * 
+	 * @return the number of encodings in this set
+	 */
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether the given encoding is in this set.
+	 * 
+	 * @param key
+	 *            - the encoding to look for
+	 * @return whether the given encoding is in this set
+	 * @throws IllegalArgumentException
+	 *             when the length of key is not the length of this set's
+	 *             encodings
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	@Override
+	public boolean contains(long[] key) {
+		checkLength(key);
+		int slot = hash(key, 0) & (capacity - 1);
+		while (isUsed(slot)) {
+			if (matches(slot, key)) {
+				return true;
+			}
+			slot = (slot + 1) & (capacity - 1);
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the given encoding to this set, if it is not already present. The
+	 * array is copied into the table, so the caller may reuse it afterwards.
+	 * 
+	 * @param key
+	 *            - the encoding to add
+	 * @return <b>true</b> if the encoding was not in this set before
+	 * @throws IllegalArgumentException
+	 *             when the length of key is not the length of this set's
+	 *             encodings
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	@Override
+	public boolean add(long[] key) {
+		checkLength(key);
+		int slot = hash(key, 0) & (capacity - 1);
+		while (isUsed(slot)) {
+			if (matches(slot, key)) {
+				return false;
+			}
+			slot = (slot + 1) & (capacity - 1);
+		}
+		System.arraycopy(key, 0, keys, slot * keyLength, keyLength);
+		used[slot >>> 6] |= 1L << slot;
+		size++;
+
+		// keeping the load factor under 3/4
+		if (size * 4L > capacity * 3L) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Does nothing, since this set lives on the Java heap only.
+	 */
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * Doubles the capacity of the table and re-inserts every encoding.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldUsed = used;
+		int oldCapacity = capacity;
+
+		capacity = oldCapacity << 1;
+		keys = new long[capacity * keyLength];
+		used = new long[capacity >>> 6];
+
+		for (int old = 0; old < oldCapacity; old++) {
+			if ((oldUsed[old >>> 6] & (1L << old)) == 0) {
+				continue;
+			}
+			int slot = hash(oldKeys, old * keyLength) & (capacity - 1);
+			while (isUsed(slot)) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			System.arraycopy(oldKeys, old * keyLength, keys, slot * keyLength,
+					keyLength);
+			used[slot >>> 6] |= 1L << slot;
+		}
+	}
+
+	/**
+	 * Checks whether the given slot of the table is in use.
+	 * 
+	 * @param slot
+	 *            - the slot to check
+	 * @return whether the slot is in use
+	 */
+	private boolean isUsed(int slot) {
+		return (used[slot >>> 6] & (1L << slot)) != 0;
+	}
+
+	/**
+	 * Checks whether the given slot of the table holds the given encoding.
+	 * 
+	 * @param slot
+	 *            - the slot to compare
+	 * @param key
+	 *            - the encoding to compare
+	 * @return whether the slot holds the encoding
+	 */
+	private boolean matches(int slot, long[] key) {
+		int base = slot * keyLength;
+		for (int i = 0; i < keyLength; i++) {
+			if (keys[base + i] != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Throws an IllegalArgumentException if the given encoding does not have
+	 * the length of this set's encodings.
+	 * 
+	 * @param key
+	 *            - the encoding to check
+	 */
+	private void checkLength(long[] key) {
+		if (key.length != keyLength) {
+			throw new IllegalArgumentException("expected a key of length "
+					+ keyLength + " but got one of length " + key.length);
+		}
+	}
+
+	/**
+	 * Returns a well-spread hash of the <b>keyLength</b> words of the given
+	 * array, starting at the given offset.
+	 * 
+	 * @param words
+	 *            - the array holding the encoding
+	 * @param offset
+	 *            - the index of the first word of the encoding
+	 * @return a hash of the encoding
+	 */
+	private int hash(long[] words, int offset) {
+		long h = 0x9E3779B97F4A7C15L;
+		for (int i = 0; i < keyLength; i++) {
+			h = (h ^ words[offset + i]) * 0xBF58476D1CE4E5B9L;
+			h ^= h >>> 31;
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
@@ -0,0 +1,64 @@
+/**
+ * <p>
+ * This interface was created to let the search process easily switch between
+ * the places where it remembers the Tray configurations it has already come
+ * across. This interface allows polymorphism between <b>ConfigurationSet</b>,
+ * which keeps the encodings on the Java heap, and
+ * <b>MappedConfigurationSet</b>, which keeps them in a memory-mapped file.
+ * </p>
+ * 
+ * <p>
+ * A ConfigurationStore holds the compact encodings returned by
+ * <b>Tray.encode()</b>. Every encoding stored in one ConfigurationStore must
+ * have the same length (see <b>Tray.encodingLength()</b>).
+ * </p>
+ */
+public interface ConfigurationStore {
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Returns the number of encodings in this store.
+	 * 
+	 * @return the number of encodings in this store
+	 */
+	public long size();
+
+	/**
+	 * Checks whether the given encoding is in this store.
+	 * 
+	 * @param key
+	 *            - the encoding to look for
+	 * @return whether the given encoding is in this store
+	 * @throws IllegalArgumentException
+	 *             when the length of key is not the length of this store's
+	 *             encodings
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public boolean contains(long[] key);
+
+	/**
+	 * Adds the given encoding to this store, if it is not already present. The
+	 * array is copied into the store, so the caller may reuse it afterwards.
+	 * 
+	 * @param key
+	 *            - the encoding to add
+	 * @return <b>true</b> if the encoding was not in this store before
+	 * @throws IllegalArgumentException
+	 *             when the length of key is not the length of this store's
+	 *             encodings
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public boolean add(long[] key);
+
+	/**
+	 * Releases whatever this store holds outside the Java heap, e.g. the files
+	 * of a MappedConfigurationSet. The store must not be used afterwards.
+	 * Closing a store more than once has no effect.
+	 */
+	public void close();
+
+	// ///////////////////// instance members end ///////////////////////
+}
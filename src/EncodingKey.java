@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ * An EncodingKey wraps an encoding returned by <b>Tray.encode()</b>, so that
+ * it can be used as a key of the java.util collections (a bare <b>long[]</b>
+ * only has identity-based equality). The hash code of the encoding is computed
+ * once, when the key is created.
+ * </p>
+ * 
+ * <p>
+ * An EncodingKey does not copy the encoding; the wrapped array must not be
+ * modified afterwards.
+ * </p>
+ * 
+ * <p>
+ * EncodingKeys of the same length are ordered lexicographically by their
+ * words (see <b>compare</b>), so that they can be sorted.
+ * </p>
+ */
+public class EncodingKey implements Comparable<EncodingKey> {
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the wrapped encoding.
+	 */
+	public final long[] encoding;
+
+	/**
+	 * Represents the hash code of the encoding, computed once.
+	 */
+	private final int hash;
+
+	/**
+	 * Wraps the given encoding.
+	 * 
+	 * @param encoding
+	 *            - the encoding to wrap
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public EncodingKey(long[] encoding) {
+		if (encoding == null) {
+			throw new NullPointerException();
+		}
+		this.encoding = encoding;
+		this.hash = Arrays.hashCode(encoding);
+	}
+
+	/**
+	 * Returns the hash code of the wrapped encoding.
+	 * 
+	 * @return the hash code of the wrapped encoding
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * Two EncodingKeys are considered equal when their encodings hold the same
+	 * words.
+	 * 
+	 * @param obj
+	 *            - the Object to compare to
+	 * @return whether the other Object wraps an equal encoding
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		EncodingKey other = (EncodingKey) obj;
+		if (hash != other.hash)
+			return false;
+		return Arrays.equals(encoding, other.encoding);
+	}
+
+	/**
+	 * Compares the encoding of this key with the encoding of the other key, as
+	 * described in <b>compare</b>.
+	 * 
+	 * @param other
+	 *            - the key to compare with
+	 * @return a negative number, zero, or a positive number as this key is
+	 *         smaller than, equal to, or greater than the other key
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	@Override
+	public int compareTo(EncodingKey other) {
+		return compare(encoding, other.encoding);
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * Compares two encodings of the same length lexicographically, word by
+	 * word, with every word compared as a signed <b>long</b>.
+	 * 
+	 * @param a
+	 *            - the first encoding
+	 * @param b
+	 *            - the second encoding
+	 * @return a negative number, zero, or a positive number as a is smaller
+	 *         than, equal to, or greater than b
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public static int compare(long[] a, long[] b) {
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) {
+				return a[i] < b[i] ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	// ///////////////////// static members end ///////////////////////
+}
@@ -0,0 +1,557 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * <p>
+ * An ExternalBreadthFirstSearch performs breadth-first search on a puzzle
+ * while keeping its levels on disk rather than on the heap. Every level is a
+ * file of the encodings (see <b>Tray.encode()</b>) of its configurations,
+ * sorted and free of duplicates. A level is expanded by reading its file
+ * sequentially and decoding every encoding back into a Tray (see
+ * <b>Tray.decode</b>); the encodings of the children are collected in a
+ * bounded buffer, which is sorted and written out as a <i>run</i> whenever it
+ * fills up.
+ * </p>
+ * 
+ * <p>
+ * Duplicates are detected only once the whole level has been expanded
+ * (<i>delayed duplicate detection</i>): the runs are merged into the file of
+ * the next level, and every encoding that is also in the current or the
+ * previous level is dropped along the way. Since every move is reversible, a
+ * child of a configuration at depth d is at depth d-1, d or d+1, so comparing
+ * against those two levels is enough; all the three files are sorted, so the
+ * comparison is a single streaming pass. A level with more than
+ * <b>MERGE_FAN_IN</b> runs is first merged in passes of that many runs at a
+ * time, so that only so many files are ever open at once. The memory the
+ * search takes is thus bounded by the size of a run and the fan-in of a
+ * merge, and its depth by the disk.
+ * </p>
+ * 
+ * <p>
+ * The level files are kept until the search is over. Once a desired
+ * configuration has been found, its path is recovered backwards: one of the
+ * neighbours of a configuration at depth d must be in the file of level d-1,
+ * where it is looked up by binary search.
+ * </p>
+ */
+public class ExternalBreadthFirstSearch {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The number of encodings that are buffered in memory before they are
+	 * sorted and written out as a run.
+	 */
+	private static final int RUN_SIZE = 1 << 18;
+
+	/**
+	 * The largest number of runs that are merged at once. Every run being
+	 * merged holds an open file and a 64KB buffer.
+	 */
+	private static final int MERGE_FAN_IN = 64;
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the initial Tray configuration of the search.
+	 */
+	private final Tray initialTray;
+
+	/**
+	 * Represents the collection of blocks in the desired final Tray
+	 * configuration.
+	 */
+	private final Collection<Block> desiredBlocks;
+
+	/**
+	 * Represents the number of <b>long</b>s in every encoding.
+	 */
+	private final int keyLength;
+
+	/**
+	 * Represents the directory in which the level and run files are created.
+	 */
+	private final File directory;
+
+	/**
+	 * Represents the files of the levels written so far; level d is at index
+	 * d.
+	 */
+	private final List<File> levels = new ArrayList<File>();
+
+	/**
+	 * Represents the number of configurations seen so far, over all levels.
+	 */
+	private long numSeen = 0;
+
+	/**
+	 * Initializes a search from the given initial Tray towards the given
+	 * desired Blocks, whose files are created in the given directory.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration to start the search process
+	 *            at
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @param directory
+	 *            - the directory to create the level and run files in, or
+	 *            null for the default temporary-file directory
+	 * @throws NullPointerException
+	 *             when initialTray or desiredBlocks is null
+	 */
+	public ExternalBreadthFirstSearch(Tray initialTray,
+			Collection<Block> desiredBlocks, File directory) {
+		if (initialTray == null || desiredBlocks == null) {
+			throw new NullPointerException();
+		}
+		this.initialTray = initialTray;
+		this.desiredBlocks = desiredBlocks;
+		this.keyLength = initialTray.encodingLength();
+		this.directory = directory;
+	}
+
+	/**
+	 * Runs the search and returns the element at which a desired configuration
+	 * has been found, or <b>null</b> if there is no solution. The level files
+	 * are deleted before this method returns.
+	 * 
+	 * @return the element at which a desired configuration has been found, or
+	 *         null if there is no solution
+	 * @throws IllegalStateException
+	 *             when any of the Trays in the search process fails to keep its
+	 *             invariants (only when Tray.checkInvariants is set to true)
+	 * @throws UncheckedIOException
+	 *             when a level or run file cannot be written or read
+	 */
+	public SolveFringeElement search() {
+		try {
+			return searchLevels();
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		} finally {
+			for (File level : levels) {
+				level.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of configurations seen so far, over all levels.
+	 * 
+	 * @return the number of configurations seen so far
+	 */
+	public long numSeen() {
+		return numSeen;
+	}
+
+	/**
+	 * Performs the search as described in <b>search()</b>, level by level.
+	 * 
+	 * @return the element at which a desired configuration has been found, or
+	 *         null if there is no solution
+	 * @throws IOException
+	 *             when a level or run file cannot be written or read
+	 */
+	private SolveFringeElement searchLevels() throws IOException {
+		if (keyLength == 0) {
+			// a Tray without Blocks has an empty encoding, which a level file
+			// cannot count, and no successors
+			numSeen = 1;
+			if (Solver.isDesiredConfiguration(initialTray, desiredBlocks)) {
+				return new SolveFringeElement(initialTray, null, null, null);
+			}
+			return null;
+		}
+		File root = createFile("level");
+		DataOutputStream out = openOutput(root);
+		writeKey(out, initialTray.encode());
+		out.close();
+		levels.add(root);
+		numSeen = 1;
+
+		List<SolveFringeElement> children = new ArrayList<SolveFringeElement>();
+		List<EncodingKey> buffer = new ArrayList<EncodingKey>();
+		while (true) {
+			File current = levels.get(levels.size() - 1);
+			List<File> runs = new ArrayList<File>();
+			KeyReader in = new KeyReader(current);
+			try {
+				while (in.head != null) {
+					Tray config = initialTray.decode(in.head);
+					if (Solver.isDesiredConfiguration(config, desiredBlocks)) {
+						return tracePath(config);
+					}
+					children.clear();
+					Solver.expand(new SolveFringeElement(config, null, null,
+							null), children);
+					for (SolveFringeElement child : children) {
+						buffer.add(new EncodingKey(child.tray.encode()));
+					}
+					if (buffer.size() >= RUN_SIZE) {
+						runs.add(writeRun(buffer));
+					}
+					in.advance();
+				}
+				if (!buffer.isEmpty()) {
+					runs.add(writeRun(buffer));
+				}
+			} finally {
+				in.close();
+			}
+
+			File next = mergeRuns(runs);
+			if (next.length() == 0) {
+				next.delete();
+				return null;
+			}
+			levels.add(next);
+		}
+	}
+
+	/**
+	 * Sorts the given buffer of encodings, writes it out as a run without
+	 * duplicates, and empties the buffer.
+	 * 
+	 * @param buffer
+	 *            - the encodings to write
+	 * @return the run file
+	 * @throws IOException
+	 *             when the run file cannot be written
+	 */
+	private File writeRun(List<EncodingKey> buffer) throws IOException {
+		Collections.sort(buffer);
+		File run = createFile("run");
+		DataOutputStream out = openOutput(run);
+		try {
+			EncodingKey last = null;
+			for (EncodingKey key : buffer) {
+				if (last == null || !last.equals(key)) {
+					writeKey(out, key.encoding);
+					last = key;
+				}
+			}
+		} finally {
+			out.close();
+		}
+		buffer.clear();
+		return run;
+	}
+
+	/**
+	 * Merges the given runs into the file of the next level, dropping the
+	 * duplicates among the runs and every encoding that is in the current or
+	 * the previous level. If there are more than <b>MERGE_FAN_IN</b> runs,
+	 * they are first merged into fewer, longer runs, in passes of at most
+	 * <b>MERGE_FAN_IN</b> runs at a time. The runs are deleted afterwards.
+	 * 
+	 * @param runs
+	 *            - the sorted runs of the children of the current level
+	 * @return the file of the next level, which may be empty
+	 * @throws IOException
+	 *             when a file cannot be written or read
+	 */
+	private File mergeRuns(List<File> runs) throws IOException {
+		while (runs.size() > MERGE_FAN_IN) {
+			List<File> merged = new ArrayList<File>();
+			for (int from = 0; from < runs.size(); from += MERGE_FAN_IN) {
+				List<File> group = runs.subList(from,
+						Math.min(from + MERGE_FAN_IN, runs.size()));
+				if (group.size() == 1) {
+					merged.add(group.get(0));
+				} else {
+					merged.add(merge(group, false));
+				}
+			}
+			runs = merged;
+		}
+		return merge(runs, true);
+	}
+
+	/**
+	 * Merges the given runs, at most <b>MERGE_FAN_IN</b> of them, into a new
+	 * sorted file, dropping the duplicates among them. The runs are deleted
+	 * afterwards.
+	 * 
+	 * @param runs
+	 *            - the sorted runs to merge
+	 * @param isLevel
+	 *            - whether the new file is the file of the next level, i.e.
+	 *            whether the encodings in the current or the previous level
+	 *            are dropped as well, and the others counted as seen
+	 * @return the new file, which may be empty
+	 * @throws IOException
+	 *             when a file cannot be written or read
+	 */
+	private File merge(List<File> runs, boolean isLevel) throws IOException {
+		PriorityQueue<KeyReader> heads = new PriorityQueue<KeyReader>();
+		List<KeyReader> readers = new ArrayList<KeyReader>();
+		File merged = createFile(isLevel ? "level" : "run");
+		DataOutputStream out = openOutput(merged);
+		try {
+			for (File run : runs) {
+				KeyReader reader = new KeyReader(run);
+				readers.add(reader);
+				if (reader.head != null) {
+					heads.add(reader);
+				}
+			}
+			KeyReader current = null;
+			KeyReader previous = null;
+			if (isLevel) {
+				current = new KeyReader(levels.get(levels.size() - 1));
+				readers.add(current);
+				if (levels.size() >= 2) {
+					previous = new KeyReader(levels.get(levels.size() - 2));
+					readers.add(previous);
+				}
+			}
+
+			long[] last = null;
+			while (!heads.isEmpty()) {
+				KeyReader smallest = heads.poll();
+				long[] key = smallest.head;
+				smallest.advance();
+				if (smallest.head != null) {
+					heads.add(smallest);
+				}
+
+				if (last != null && EncodingKey.compare(last, key) == 0) {
+					continue; // a duplicate among the runs
+				}
+				last = key;
+				if (isLevel) {
+					if (current.skipTo(key) || previous != null
+							&& previous.skipTo(key)) {
+						continue; // seen on the current or the previous level
+					}
+					numSeen++;
+				}
+				writeKey(out, key);
+			}
+		} finally {
+			out.close();
+			for (KeyReader reader : readers) {
+				reader.close();
+			}
+			for (File run : runs) {
+				run.delete();
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Recovers the path from the initial Tray to the given configuration,
+	 * which is on the last level written, by looking up a neighbour of every
+	 * configuration on the path in the level before it.
+	 * 
+	 * @param goal
+	 *            - the desired configuration found on the last level
+	 * @return the element for the given configuration, whose chain of parents
+	 *         leads back to the initial Tray
+	 * @throws IOException
+	 *             when a level file cannot be read
+	 */
+	private SolveFringeElement tracePath(Tray goal) throws IOException {
+		// the configurations on the path, from the goal backwards, along with
+		// the positions of the Block moved to get to each of them
+		List<Tray> path = new ArrayList<Tray>();
+		List<Point> oldPositions = new ArrayList<Point>();
+		List<Point> newPositions = new ArrayList<Point>();
+		path.add(goal);
+
+		List<SolveFringeElement> neighbours = new ArrayList<SolveFringeElement>();
+		for (int d = levels.size() - 1; d > 0; d--) {
+			Tray config = path.get(path.size() - 1);
+			neighbours.clear();
+			Solver.expand(new SolveFringeElement(config, null, null, null),
+					neighbours);
+			for (SolveFringeElement neighbour : neighbours) {
+				if (containsKey(levels.get(d - 1), neighbour.tray.encode())) {
+					// the move from the neighbour to config is the reverse of
+					// the move that generated the neighbour
+					path.add(neighbour.tray);
+					oldPositions.add(neighbour.newBlockPosition);
+					newPositions.add(neighbour.oldBlockPosition);
+					break;
+				}
+			}
+		}
+
+		SolveFringeElement elem = new SolveFringeElement(initialTray, null,
+				null, null);
+		for (int k = path.size() - 2; k >= 0; k--) {
+			elem = new SolveFringeElement(path.get(k), elem,
+					oldPositions.get(k), newPositions.get(k));
+		}
+		return elem;
+	}
+
+	/**
+	 * Checks whether the given sorted file of encodings contains the given
+	 * encoding, by binary search.
+	 * 
+	 * @param f
+	 *            - the sorted file of encodings
+	 * @param key
+	 *            - the encoding to look for
+	 * @return whether the file contains the encoding
+	 * @throws IOException
+	 *             when the file cannot be read
+	 */
+	private boolean containsKey(File f, long[] key) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			long recordBytes = keyLength * 8L;
+			long lo = 0;
+			long hi = raf.length() / recordBytes - 1;
+			long[] probe = new long[keyLength];
+			while (lo <= hi) {
+				long mid = (lo + hi) >>> 1;
+				raf.seek(mid * recordBytes);
+				for (int i = 0; i < keyLength; i++) {
+					probe[i] = raf.readLong();
+				}
+				int cmp = EncodingKey.compare(probe, key);
+				if (cmp == 0) {
+					return true;
+				} else if (cmp < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			return false;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Creates a new, empty file in this search's directory, to be deleted
+	 * when the JVM exits at the latest.
+	 * 
+	 * @param prefix
+	 *            - the prefix of the file name
+	 * @return the new file
+	 * @throws IOException
+	 *             when the file cannot be created
+	 */
+	private File createFile(String prefix) throws IOException {
+		File f = File.createTempFile(prefix, ".keys", directory);
+		f.deleteOnExit();
+		return f;
+	}
+
+	/**
+	 * Opens a buffered stream that writes to the given file.
+	 * 
+	 * @param f
+	 *            - the file to write to
+	 * @return a buffered stream that writes to the file
+	 * @throws IOException
+	 *             when the file cannot be opened
+	 */
+	private static DataOutputStream openOutput(File f) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(f), 1 << 16));
+	}
+
+	/**
+	 * Writes the words of the given encoding to the given stream.
+	 * 
+	 * @param out
+	 *            - the stream to write to
+	 * @param key
+	 *            - the encoding to write
+	 * @throws IOException
+	 *             when the stream cannot be written
+	 */
+	private static void writeKey(DataOutputStream out, long[] key)
+			throws IOException {
+		for (long word : key) {
+			out.writeLong(word);
+		}
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+
+	/**
+	 * Reads a sorted file of encodings sequentially, one encoding at a time.
+	 * KeyReaders are ordered by their current encodings, so that the smallest
+	 * one can be picked when several runs are merged.
+	 */
+	private class KeyReader implements Comparable<KeyReader> {
+
+		/**
+		 * Represents the stream that the encodings are read from.
+		 */
+		private final DataInputStream in;
+
+		/**
+		 * Represents the number of encodings not read yet.
+		 */
+		private long remaining;
+
+		/**
+		 * Represents the current encoding, or null once the whole file has
+		 * been read.
+		 */
+		long[] head;
+
+		KeyReader(File f) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(f), 1 << 16));
+			this.remaining = f.length() / (keyLength * 8L);
+			advance();
+		}
+
+		/**
+		 * Moves on to the next encoding of the file.
+		 * 
+		 * @throws IOException
+		 *             when the file cannot be read
+		 */
+		void advance() throws IOException {
+			if (remaining == 0) {
+				head = null;
+				return;
+			}
+			head = new long[keyLength];
+			for (int i = 0; i < keyLength; i++) {
+				head[i] = in.readLong();
+			}
+			remaining--;
+		}
+
+		/**
+		 * Moves on past every encoding smaller than the given one, and tells
+		 * whether the file contains the given encoding. The encodings passed
+		 * to successive calls must not decrease.
+		 * 
+		 * @param key
+		 *            - the encoding to look for
+		 * @return whether the file contains the encoding
+		 * @throws IOException
+		 *             when the file cannot be read
+		 */
+		boolean skipTo(long[] key) throws IOException {
+			while (head != null && EncodingKey.compare(head, key) < 0) {
+				advance();
+			}
+			return head != null && EncodingKey.compare(head, key) == 0;
+		}
+
+		void close() throws IOException {
+			in.close();
+		}
+
+		@Override
+		public int compareTo(KeyReader other) {
+			return EncodingKey.compare(head, other.head);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ * <p>
+ * A Heuristic estimates how many moves a Tray configuration is away from
+ * satisfying the desired goal Blocks. It is what lets a <b>PriorityFringe</b>
+ * perform goal-directed (A*) search instead of blind depth-first or
+ * breadth-first search.
+ * </p>
+ * 
+ * <p>
+ * An implementation must be <i>admissible</i>: the estimate must never exceed
+ * the true number of moves still needed. Every implementation is constructed
+ * with the desired goal Blocks it measures against, so that any per-goal
+ * preprocessing is done only once.
+ * </p>
+ */
+public interface Heuristic {
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Returns a lower bound on the number of single-step moves needed to get
+	 * from the given configuration to one that contains every desired Block.
+	 * 
+	 * @param config
+	 *            - the Tray configuration to estimate
+	 * @return a non-negative lower bound on the number of remaining moves
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public int estimate(Tray config);
+
+	// ///////////////////// instance members end ///////////////////////
+}
@@ -0,0 +1,340 @@
+import java.util.*;
+
+/**
+ * <p>
+ * An InPlaceDepthFirstSearch performs depth-first search on a puzzle using a
+ * single mutable Tray. Instead of cloning a Tray for every child, it applies a
+ * move to the Tray (<i>make</i>), explores from there, and takes the move back
+ * by moving the same Block in the reverse direction (<i>unmake</i>) once the
+ * child has been explored. A move only touches the leading and trailing edges
+ * of a Block, so every step costs time proportional to the edge of the Block
+ * rather than to the size of the Tray, and allocates next to nothing.
+ * </p>
+ * 
+ * <p>
+ * The current path is kept as a stack of moves in primitive arrays: for every
+ * depth, the Block moved, its Direction, its position before the move, and a
+ * cursor telling which move to try next. The cursor is what lets the search
+ * resume the siblings of a child after unmaking it, without ever storing a
+ * list of children. The stack is also the move trace of the solution.
+ * </p>
+ * 
+ * <p>
+ * If Solver.usesMacroMoves() is true, a move at some depth may slide its
+ * Block by more than one Point. A slide is grown one Point at a time on the
+ * same Tray, right after the shorter slide has been explored (see
+ * <b>slideFurther</b>), so it never has to be made from scratch.
+ * </p>
+ * 
+ * <p>
+ * Moves are enumerated block-wise or blank-wise, as chosen by
+ * <b>Solver.isBlockwise</b>. In blank-wise search the cursor walks over the
+ * blanks of the Tray (see <b>Tray.nextBlank</b>); since the Tray has been
+ * restored by the time the cursor is used again, the blanks are the same as
+ * when the cursor was set.
+ * </p>
+ */
+public class InPlaceDepthFirstSearch {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The depth that the move stack has room for at first.
+	 */
+	private static final int INITIAL_DEPTH = 1 << 10;
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the single Tray that every move is applied to.
+	 */
+	private final Tray tray;
+
+	/**
+	 * Represents the collection of blocks in the desired final Tray
+	 * configuration.
+	 */
+	private final Collection<Block> desiredBlocks;
+
+	/**
+	 * Represents the encodings of all the configurations seen so far.
+	 */
+	private final ConfigurationStore seen;
+
+	/**
+	 * Represents whether moves are enumerated block-wise (rather than
+	 * blank-wise).
+	 */
+	private final boolean blockwise;
+
+	/**
+	 * Represents whether a move may slide a Block by more than one Point (see
+	 * <b>slideFurther</b>).
+	 */
+	private final boolean macroMoves;
+
+	/**
+	 * Represents the Symmetries under which configurations are encoded (see
+	 * <b>Tray.encode(Symmetry[])</b>).
+	 */
+	private final Symmetry[] symmetries;
+
+	/**
+	 * Represents the index of the Block moved at every depth of the path.
+	 */
+	private int[] movedBlocks = new int[INITIAL_DEPTH];
+
+	/**
+	 * Represents the Direction of the move made at every depth of the path.
+	 */
+	private Direction[] movedDirections = new Direction[INITIAL_DEPTH];
+
+	/**
+	 * Represents the position of the moved Block before the move made at
+	 * every depth of the path.
+	 */
+	private Point[] oldPositions = new Point[INITIAL_DEPTH];
+
+	/**
+	 * Represents the number of Points by which the Block was moved at every
+	 * depth of the path. This is always 1 unless Solver.usesMacroMoves() is
+	 * true.
+	 */
+	private int[] slideLengths = new int[INITIAL_DEPTH];
+
+	/**
+	 * Represents the next move to try at every depth of the path. In
+	 * block-wise search, a move is numbered <b>blockIdx * 4 +
+	 * directionIdx</b>; in blank-wise search, it is numbered <b>blankIdx * 4
+	 * + directionIdx</b>, where blankIdx is the index of the blank the Block
+	 * would move into (see <b>Tray.nextBlank</b>).
+	 */
+	private int[] cursors = new int[INITIAL_DEPTH];
+
+	/**
+	 * Represents the index of the Block of the move last found by
+	 * <b>nextMove</b>.
+	 */
+	private int nextBlockIdx;
+
+	/**
+	 * Represents the Direction of the move last found by <b>nextMove</b>.
+	 */
+	private Direction nextDirection;
+
+	/**
+	 * Initializes a search from the given initial Tray towards the given
+	 * desired Blocks, that remembers the configurations it has seen in the
+	 * given store. The initial Tray itself is never modified.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration to start the search process
+	 *            at
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @param seen
+	 *            - an empty store for the encodings of the configurations seen
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public InPlaceDepthFirstSearch(Tray initialTray,
+			Collection<Block> desiredBlocks, ConfigurationStore seen) {
+		if (initialTray == null || desiredBlocks == null || seen == null) {
+			throw new NullPointerException();
+		}
+		this.tray = initialTray.clone();
+		this.desiredBlocks = desiredBlocks;
+		this.seen = seen;
+		this.blockwise = Solver.isBlockwise(initialTray);
+		this.macroMoves = Solver.usesMacroMoves();
+		this.symmetries = Solver.symmetriesOf(initialTray, desiredBlocks);
+	}
+
+	/**
+	 * Runs the search, and writes the solution to the given MoveTraceWriter
+	 * in the format described in the Javadoc on MoveTraceWriter if there is
+	 * one. The writer is not flushed.
+	 * 
+	 * @param out
+	 *            - the MoveTraceWriter to write the solution to
+	 * @return the number of moves in the solution, or -1 if there is no
+	 *         solution
+	 * @throws IllegalStateException
+	 *             when the Tray fails to keep its invariants (only when
+	 *             Tray.checkInvariants is set to true)
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public int search(MoveTraceWriter out) {
+		if (out == null) {
+			throw new NullPointerException();
+		}
+		if (Solver.isDesiredConfiguration(tray, desiredBlocks)) {
+			return 0;
+		}
+		seen.add(tray.encode(symmetries));
+
+		int depth = 0;
+		cursors[0] = 0;
+		while (depth >= 0) {
+			int move = nextMove(cursors[depth]);
+			if (move < 0) { // every move of this configuration has been tried
+				if (--depth < 0 || !slideFurther(depth)) {
+					continue;
+				}
+			} else {
+				cursors[depth] = move + 1;
+				movedBlocks[depth] = nextBlockIdx;
+				movedDirections[depth] = nextDirection;
+				oldPositions[depth] = tray.getBlock(nextBlockIdx)
+						.getUpperLeft();
+				slideLengths[depth] = 1;
+				tray.moveBlock(nextBlockIdx, nextDirection); // make
+				if (!seen.add(tray.encode(symmetries)) && !slideFurther(depth)) {
+					continue;
+				}
+			}
+
+			// the move at depth has led to a configuration not seen before
+			depth++;
+			if (depth == cursors.length) {
+				growStack();
+			}
+			cursors[depth] = 0;
+			if (Solver.isDesiredConfiguration(tray, desiredBlocks)) {
+				return writeMoveTrace(out, depth);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Deals with the move at the given depth of the path, whose configuration
+	 * has either been seen before or been explored completely. If
+	 * Solver.usesMacroMoves() is true, the moved Block is slid further, one
+	 * Point at a time, until it reaches a configuration not seen before; the
+	 * longer slide then takes the place of the move at the given depth.
+	 * Otherwise, or if no such configuration can be reached, the move is
+	 * taken back (<i>unmake</i>), so that the Tray is back at the
+	 * configuration of the given depth.
+	 * 
+	 * @param depth
+	 *            - the depth of the move to deal with
+	 * @return whether the move at the given depth now leads to a
+	 *         configuration not seen before
+	 */
+	private boolean slideFurther(int depth) {
+		int i = movedBlocks[depth];
+		Direction d = movedDirections[depth];
+		if (macroMoves) {
+			while (tray.canMove(i, d)) {
+				tray.moveBlock(i, d);
+				slideLengths[depth]++;
+				if (seen.add(tray.encode(symmetries))) {
+					return true;
+				}
+			}
+		}
+		for (int k = 0; k < slideLengths[depth]; k++) {
+			tray.moveBlock(i, d.reverse()); // unmake
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of configurations seen so far.
+	 * 
+	 * @return the number of configurations seen so far
+	 */
+	public long numSeen() {
+		return seen.size();
+	}
+
+	/**
+	 * Finds the first legal move of the current configuration whose number
+	 * (see <b>cursors</b>) is not smaller than the given one, and stores it
+	 * in <b>nextBlockIdx</b> and <b>nextDirection</b>.
+	 * 
+	 * @param from
+	 *            - the number of the first move to consider
+	 * @return the number of the move found, or -1 if there is none
+	 */
+	private int nextMove(int from) {
+		int numDirections = Direction.all.length;
+		if (blockwise) {
+			for (int move = from; move < tray.numBlocks * numDirections; move++) {
+				int i = move / numDirections;
+				Direction d = Direction.all[move % numDirections];
+				if (tray.canMove(i, d)) {
+					nextBlockIdx = i;
+					nextDirection = d;
+					return move;
+				}
+			}
+			return -1;
+		}
+
+		int blankIdx = tray.nextBlank(from / numDirections);
+		int dirIdx = (blankIdx == from / numDirections) ? from % numDirections
+				: 0;
+		while (blankIdx >= 0) {
+			Point blank = Point.getInstance(blankIdx / tray.colSize, blankIdx
+					% tray.colSize);
+			for (; dirIdx < numDirections; dirIdx++) {
+				Direction d = Direction.all[dirIdx];
+				int i = tray.findBlockNextTo(blank, d.reverse());
+				if (i != -1
+						&& Solver.isLeadingEdgeCorner(tray.getBlock(i), blank,
+								d) && tray.canMove(i, d)) {
+					nextBlockIdx = i;
+					nextDirection = d;
+					return blankIdx * numDirections + dirIdx;
+				}
+			}
+			blankIdx = tray.nextBlank(blankIdx + 1);
+			dirIdx = 0;
+		}
+		return -1;
+	}
+
+	/**
+	 * Doubles the depth that the move stack has room for.
+	 */
+	private void growStack() {
+		int newLength = cursors.length << 1;
+		movedBlocks = Arrays.copyOf(movedBlocks, newLength);
+		movedDirections = Arrays.copyOf(movedDirections, newLength);
+		oldPositions = Arrays.copyOf(oldPositions, newLength);
+		slideLengths = Arrays.copyOf(slideLengths, newLength);
+		cursors = Arrays.copyOf(cursors, newLength);
+	}
+
+	/**
+	 * Writes the moves of the current path to the given MoveTraceWriter, in
+	 * the format described in the Javadoc on MoveTraceWriter, with every
+	 * slide broken up into unit moves.
+	 * 
+	 * @param out
+	 *            - the MoveTraceWriter to write the moves to
+	 * @param depth
+	 *            - the number of moves on the current path
+	 * @return the number of unit moves written
+	 */
+	private int writeMoveTrace(MoveTraceWriter out, int depth) {
+		int numWritten = out.numMoves();
+		for (int k = 0; k < depth; k++) {
+			Point p = oldPositions[k];
+			for (int step = 0; step < slideLengths[k]; step++) {
+				Point next = p.go(movedDirections[k]);
+				out.writeMove(p, next);
+				p = next;
+			}
+		}
+		return out.numMoves() - numWritten;
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
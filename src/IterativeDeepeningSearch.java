@@ -0,0 +1,264 @@
+import java.util.*;
+
+/**
+ * <p>
+ * An IterativeDeepeningSearch performs iterative-deepening A* (IDA*) search on
+ * a puzzle. Each iteration is a depth-first search that gives up on any
+ * configuration whose depth plus Heuristic estimate exceeds the current bound;
+ * the next iteration raises the bound to the smallest value that was exceeded.
+ * Since only the current path is kept, the memory the search takes is
+ * proportional to the depth of the solution rather than to the number of
+ * configurations visited. This makes it possible to solve puzzles whose state
+ * spaces do not fit in memory.
+ * </p>
+ * 
+ * <p>
+ * Plain IDA* would explore the same configuration many times over, through
+ * different paths and in every iteration. A fixed-capacity TranspositionTable
+ * cuts most of that re-expansion without giving up the memory bound.
+ * </p>
+ * 
+ * <p>
+ * The current path is a chain of SolveFringeElements, so a solution is written
+ * with <b>SolveFringeElement.writeMoveTrace</b> exactly as in the other
+ * search modes.
+ * </p>
+ */
+public class IterativeDeepeningSearch {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The memory budget of the transposition table, in <b>long</b>s (32MB).
+	 */
+	private static final int TABLE_WORDS = 1 << 22;
+
+	/**
+	 * Represents a bound that can never be exceeded.
+	 */
+	private static final int INFINITY = Integer.MAX_VALUE;
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the initial Tray configuration of the search.
+	 */
+	private final Tray initialTray;
+
+	/**
+	 * Represents the collection of blocks in the desired final Tray
+	 * configuration.
+	 */
+	private final Collection<Block> desiredBlocks;
+
+	/**
+	 * Represents the Heuristic that bounds every iteration.
+	 */
+	private final Heuristic heuristic;
+
+	/**
+	 * Represents the memo of the configurations explored so far.
+	 */
+	private final TranspositionTable table;
+
+	/**
+	 * Represents the smallest depth plus estimate that exceeded the bound of
+	 * the current iteration.
+	 */
+	private int nextBound;
+
+	/**
+	 * Represents the number of configurations expanded so far, over all
+	 * iterations.
+	 */
+	private long numExpanded = 0;
+
+	/**
+	 * Initializes a search from the given initial Tray towards the given
+	 * desired Blocks, guided by the given Heuristic.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration to start the search process
+	 *            at
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @param heuristic
+	 *            - an admissible Heuristic for desiredBlocks
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public IterativeDeepeningSearch(Tray initialTray,
+			Collection<Block> desiredBlocks, Heuristic heuristic) {
+		if (initialTray == null || desiredBlocks == null || heuristic == null) {
+			throw new NullPointerException();
+		}
+		this.initialTray = initialTray;
+		this.desiredBlocks = desiredBlocks;
+		this.heuristic = heuristic;
+		this.table = new TranspositionTable(initialTray.encodingLength(),
+				TABLE_WORDS);
+	}
+
+	/**
+	 * Runs the search and returns the element at which a desired configuration
+	 * has been found, or <b>null</b> if there is no solution.
+	 * 
+	 * @return the element at which a desired configuration has been found, or
+	 *         null if there is no solution
+	 * @throws IllegalStateException
+	 *             when any of the Trays in the search process fails to keep its
+	 *             invariants (only when Tray.checkInvariants is set to true)
+	 */
+	public SolveFringeElement search() {
+		SolveFringeElement root = new SolveFringeElement(initialTray, null,
+				null, null);
+		int bound = heuristic.estimate(initialTray);
+		for (int iteration = 1;; iteration++) {
+			nextBound = INFINITY;
+			SolveFringeElement found = search(root, bound, iteration);
+			if (found != null) {
+				return found;
+			}
+			if (nextBound == INFINITY) {
+				return null;
+			}
+			bound = nextBound;
+		}
+	}
+
+	/**
+	 * Returns the number of configurations expanded so far, over all
+	 * iterations.
+	 * 
+	 * @return the number of configurations expanded so far
+	 */
+	public long numExpanded() {
+		return numExpanded;
+	}
+
+	/**
+	 * Performs the depth-first part of a single iteration. The depth-first
+	 * search keeps an explicit stack of Frames rather than recursing, so that
+	 * deep bounds cannot overflow the call stack.
+	 * 
+	 * @param root
+	 *            - the element to start the iteration at
+	 * @param bound
+	 *            - the bound on depth plus estimate of this iteration
+	 * @param iteration
+	 *            - the current iteration, starting from 1
+	 * @return the element at which a desired configuration has been found, or
+	 *         null if there is none within the bound
+	 */
+	private SolveFringeElement search(SolveFringeElement root, int bound,
+			int iteration) {
+		if (Solver.isDesiredConfiguration(root.tray, desiredBlocks)) {
+			return root;
+		}
+		if (!shouldExpand(root, bound, iteration)) {
+			return null;
+		}
+		Deque<Frame> path = new ArrayDeque<Frame>();
+		path.push(new Frame(root, -1, null));
+
+		while (!path.isEmpty()) {
+			Frame top = path.peek();
+			Tray config = top.elem.tray;
+			if (top.nextMove == config.numBlocks * Direction.all.length) {
+				path.pop(); // every move of this configuration has been tried
+				continue;
+			}
+			int i = top.nextMove / Direction.all.length;
+			Direction d = Direction.all[top.nextMove % Direction.all.length];
+			top.nextMove++;
+			if (i == top.lastBlockIdx && d == top.lastDirection.reverse()) {
+				continue; // would just undo the last move
+			}
+
+			if (!config.canMove(i, d)) {
+				continue; // the block cannot be moved in this direction
+			}
+			Point oldBlockPosition = config.getBlock(i).getUpperLeft();
+			Tray nextConfig = config.clone();
+			nextConfig.moveBlock(i, d);
+			Point newBlockPosition = nextConfig.getBlock(i).getUpperLeft();
+			SolveFringeElement child = new SolveFringeElement(nextConfig,
+					top.elem, oldBlockPosition, newBlockPosition);
+
+			if (Solver.isDesiredConfiguration(nextConfig, desiredBlocks)) {
+				return child;
+			}
+			if (shouldExpand(child, bound, iteration)) {
+				path.push(new Frame(child, i, d));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the given element should be expanded in the current
+	 * iteration. It should not be when its depth plus estimate exceeds the
+	 * bound (in which case <b>nextBound</b> is updated), or when the
+	 * TranspositionTable says that it can be pruned.
+	 * 
+	 * @param elem
+	 *            - the element to check
+	 * @param bound
+	 *            - the bound on depth plus estimate of this iteration
+	 * @param iteration
+	 *            - the current iteration, starting from 1
+	 * @return whether the element should be expanded
+	 */
+	private boolean shouldExpand(SolveFringeElement elem, int bound,
+			int iteration) {
+		int f = elem.depth + heuristic.estimate(elem.tray);
+		if (f > bound) {
+			nextBound = Math.min(nextBound, f);
+			return false;
+		}
+		if (table.visit(elem.tray.encode(), elem.depth, iteration)) {
+			return false;
+		}
+		numExpanded++;
+		return true;
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+
+	/**
+	 * A configuration on the current path of the depth-first search, along
+	 * with the move that led to it and the next move to try from it.
+	 */
+	private static class Frame {
+
+		/**
+		 * Represents the element on the current path.
+		 */
+		final SolveFringeElement elem;
+
+		/**
+		 * Represents the index of the Block moved last, or -1 at the root.
+		 */
+		final int lastBlockIdx;
+
+		/**
+		 * Represents the direction of the last move, or null at the root.
+		 */
+		final Direction lastDirection;
+
+		/**
+		 * Represents the next move to try, as <b>blockIdx * 4 +
+		 * directionIdx</b>.
+		 */
+		int nextMove = 0;
+
+		Frame(SolveFringeElement elem, int lastBlockIdx, Direction lastDirection) {
+			this.elem = elem;
+			this.lastBlockIdx = lastBlockIdx;
+			this.lastDirection = lastDirection;
+		}
+	}
+}
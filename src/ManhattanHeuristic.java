@@ -0,0 +1,235 @@
+import java.util.*;
+
+/**
+ * <p>
+ * A ManhattanHeuristic estimates the number of remaining moves by the
+ * Manhattan distances between the desired goal Blocks and the Blocks of the
+ * same shape in a Tray. Since a single move displaces a single Block by one,
+ * it can shorten the distance of at most one Block to one goal position by
+ * one.
+ * </p>
+ * 
+ * <p>
+ * The goal Blocks are grouped by shape class. For a shape class with a single
+ * goal Block, the estimate is the distance from the nearest Block of that
+ * shape. For a shape class with several goal Blocks, each goal must end up
+ * with a <i>distinct</i> Block, so the estimate is the cost of the cheapest
+ * assignment of goals to distinct Blocks, computed exactly by dynamic
+ * programming over subsets of goals when that is affordable. When it is not
+ * (many goals of a shape shared by many Blocks), the estimate falls back to
+ * the largest of the per-goal nearest distances. Each of these terms changes
+ * by at most one per move of a Block of its shape class, and the terms of
+ * different shape classes are summed, so the estimate is admissible.
+ * </p>
+ * 
+ * <p>
+ * Goal Blocks whose shape does not appear in the Tray at all cannot be
+ * satisfied; they do not contribute to the estimate.
+ * </p>
+ */
+public class ManhattanHeuristic implements Heuristic {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The largest amount of work (number of Blocks times 2 to the number of
+	 * goals) that a shape class may take for the exact assignment.
+	 */
+	private static final int MAX_ASSIGNMENT_WORK = 1 << 14;
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents, for every shape class that has goal Blocks, the indices of
+	 * the Tray's Blocks of that shape.
+	 */
+	private final int[][] candidates;
+
+	/**
+	 * Represents, for every shape class that has goal Blocks, the rows of the
+	 * goal Blocks' upper left corners.
+	 */
+	private final int[][] goalRows;
+
+	/**
+	 * Represents, for every shape class that has goal Blocks, the columns of
+	 * the goal Blocks' upper left corners.
+	 */
+	private final int[][] goalCols;
+
+	/**
+	 * Represents, for every shape class that has goal Blocks, whether the
+	 * exact assignment is computed for it.
+	 */
+	private final boolean[] exact;
+
+	/**
+	 * Initializes a ManhattanHeuristic for the given desired Blocks. The
+	 * initial Tray is used to find the Blocks of each goal shape; since a
+	 * Block's index and shape never change, the result holds for every Tray
+	 * reachable from the initial Tray.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration of the search
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public ManhattanHeuristic(Tray initialTray, Collection<Block> desiredBlocks) {
+		Map<Integer, List<Block>> goalsByShape = new TreeMap<Integer, List<Block>>();
+		for (Block goal : desiredBlocks) {
+			if (!goalsByShape.containsKey(goal.shapeId())) {
+				goalsByShape.put(goal.shapeId(), new ArrayList<Block>());
+			}
+			goalsByShape.get(goal.shapeId()).add(goal);
+		}
+
+		List<int[]> candidateList = new ArrayList<int[]>();
+		List<List<Block>> goalList = new ArrayList<List<Block>>();
+		for (Map.Entry<Integer, List<Block>> e : goalsByShape.entrySet()) {
+			List<Integer> indices = new ArrayList<Integer>();
+			for (int i = 0; i < initialTray.numBlocks; i++) {
+				if (initialTray.getBlock(i).shapeId() == e.getKey()) {
+					indices.add(i);
+				}
+			}
+			if (indices.isEmpty()) {
+				continue; // unsatisfiable goal; contributes nothing
+			}
+			int[] idx = new int[indices.size()];
+			for (int k = 0; k < idx.length; k++) {
+				idx[k] = indices.get(k);
+			}
+			candidateList.add(idx);
+			goalList.add(e.getValue());
+		}
+
+		int n = candidateList.size();
+		candidates = new int[n][];
+		goalRows = new int[n][];
+		goalCols = new int[n][];
+		exact = new boolean[n];
+		for (int c = 0; c < n; c++) {
+			candidates[c] = candidateList.get(c);
+			List<Block> goals = goalList.get(c);
+			goalRows[c] = new int[goals.size()];
+			goalCols[c] = new int[goals.size()];
+			for (int j = 0; j < goals.size(); j++) {
+				goalRows[c][j] = goals.get(j).getUpperLeft().rowIdx;
+				goalCols[c][j] = goals.get(j).getUpperLeft().colIdx;
+			}
+			exact[c] = goals.size() > 1 && goals.size() < 20
+					&& ((long) candidates[c].length << goals.size()) <= MAX_ASSIGNMENT_WORK;
+		}
+	}
+
+	/**
+	 * Returns a lower bound on the number of single-step moves needed to get
+	 * from the given configuration to one that contains every desired Block.
+	 * 
+	 * @param config
+	 *            - the Tray configuration to estimate
+	 * @return a non-negative lower bound on the number of remaining moves
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	@Override
+	public int estimate(Tray config) {
+		int sum = 0;
+		for (int c = 0; c < candidates.length; c++) {
+			if (exact[c]) {
+				sum += cheapestAssignment(config, c);
+			} else {
+				sum += largestNearestDistance(config, c);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the largest, over the goals of the given shape class, of the
+	 * distance from the goal to the nearest Block of that shape.
+	 * 
+	 * @param config
+	 *            - the Tray configuration to estimate
+	 * @param c
+	 *            - the shape class
+	 * @return the largest nearest distance
+	 */
+	private int largestNearestDistance(Tray config, int c) {
+		int largest = 0;
+		for (int j = 0; j < goalRows[c].length; j++) {
+			int nearest = Integer.MAX_VALUE;
+			for (int i : candidates[c]) {
+				nearest = Math.min(nearest, distance(config, i, c, j));
+			}
+			largest = Math.max(largest, nearest);
+		}
+		return largest;
+	}
+
+	/**
+	 * Returns the cost of the cheapest assignment of the goals of the given
+	 * shape class to distinct Blocks of that shape. The dynamic program goes
+	 * through the Blocks one by one, keeping the cheapest cost of every subset
+	 * of goals that has been assigned so far.
+	 * 
+	 * @param config
+	 *            - the Tray configuration to estimate
+	 * @param c
+	 *            - the shape class
+	 * @return the cost of the cheapest assignment
+	 */
+	private int cheapestAssignment(Tray config, int c) {
+		int numGoals = goalRows[c].length;
+		int full = (1 << numGoals) - 1;
+		int[] cost = new int[full + 1];
+		Arrays.fill(cost, Integer.MAX_VALUE);
+		cost[0] = 0;
+		for (int i : candidates[c]) {
+			// going through the subsets downwards uses every Block only once
+			for (int mask = full; mask >= 0; mask--) {
+				if (cost[mask] == Integer.MAX_VALUE) {
+					continue;
+				}
+				for (int j = 0; j < numGoals; j++) {
+					if ((mask & (1 << j)) == 0) {
+						int next = mask | (1 << j);
+						int d = cost[mask] + distance(config, i, c, j);
+						if (d < cost[next]) {
+							cost[next] = d;
+						}
+					}
+				}
+			}
+		}
+		// fewer Blocks than goals means the goal is unsatisfiable
+		return cost[full] == Integer.MAX_VALUE ? 0 : cost[full];
+	}
+
+	/**
+	 * Returns the Manhattan distance between the given Block of the given
+	 * configuration and the given goal of the given shape class.
+	 * 
+	 * @param config
+	 *            - the Tray configuration
+	 * @param blockIdx
+	 *            - the unique index of the Block within the Tray
+	 * @param c
+	 *            - the shape class
+	 * @param j
+	 *            - the index of the goal within the shape class
+	 * @return the Manhattan distance between the Block and the goal
+	 */
+	private int distance(Tray config, int blockIdx, int c, int j) {
+		Point ul = config.getBlock(blockIdx).getUpperLeft();
+		return Math.abs(ul.rowIdx - goalRows[c][j])
+				+ Math.abs(ul.colIdx - goalCols[c][j]);
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
@@ -0,0 +1,511 @@
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * A MappedConfigurationSet is a ConfigurationStore whose hash table lives in a
+ * memory-mapped temporary file instead of on the Java heap. The layout of the
+ * table is the same as a ConfigurationSet's: the encodings returned by
+ * <b>Tray.encode()</b> are stored back to back in slots of an open-addressing
+ * hash table with linear probing, with a separate bitmap of the slots in use.
+ * Both the bitmap and the slots are <b>long</b> words of the file.
+ * </p>
+ * 
+ * <p>
+ * Since none of the table is on the heap, the number of configurations the
+ * search can remember is bounded by the disk rather than by <b>-Xmx</b>, and
+ * the garbage collector never has to scan it, so its pauses do not grow with
+ * the number of configurations visited. The operating system's page cache
+ * decides which parts of the table stay in memory. This makes the puzzles
+ * whose state spaces overflow the heap (e.g. the enormous.* ones) solvable,
+ * at the cost of slower probes once the table outgrows physical memory.
+ * </p>
+ * 
+ * <p>
+ * A single mapping cannot be bigger than 2GB, so the file is mapped in chunks
+ * of <b>CHUNK_WORDS</b> words. When the table passes its load factor, a file
+ * twice as big is created, every encoding is re-inserted into it, and the old
+ * file is unmapped and deleted. <b>close()</b> does the same to the last file,
+ * so a search must close its set when it is done (see <b>Solver.solve</b>);
+ * a file that cannot be deleted then is deleted when the JVM exits.
+ * </p>
+ */
+public class MappedConfigurationSet implements ConfigurationStore {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The number of slots that a new MappedConfigurationSet starts with. This
+	 * must be a power of two, and at least 64.
+	 */
+	private static final long INITIAL_CAPACITY = 1 << 16;
+
+	/**
+	 * The base-2 logarithm of <b>CHUNK_WORDS</b>.
+	 */
+	private static final int CHUNK_SHIFT = 27;
+
+	/**
+	 * The number of <b>long</b>s in every mapped chunk of the file (1GB).
+	 */
+	private static final long CHUNK_WORDS = 1L << CHUNK_SHIFT;
+
+	/**
+	 * The instance of sun.misc.Unsafe, or <b>null</b> if this JVM does not
+	 * let it be used (see <b>unmap</b>).
+	 */
+	private static final Object UNSAFE;
+
+	/**
+	 * The method sun.misc.Unsafe.invokeCleaner, or <b>null</b> if this JVM
+	 * does not let it be used (see <b>unmap</b>).
+	 */
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafe = theUnsafe.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+					ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// the mappings are then released by the garbage collector
+			unsafe = null;
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	/**
+	 * Releases the given mappings right away, rather than whenever the garbage
+	 * collector finds them unreachable, so that the pages and the address
+	 * space they hold are returned, and the file behind them can be deleted
+	 * on every platform. The Java API has no means to do this, so this is
+	 * done through sun.misc.Unsafe if the JVM allows it; otherwise this method
+	 * does nothing. The mappings must not be accessed afterwards.
+	 * 
+	 * @param mapped
+	 *            - the mappings to release; null elements, i.e. chunks that
+	 *            have not been mapped, are skipped
+	 */
+	private static void unmap(MappedByteBuffer[] mapped) {
+		if (INVOKE_CLEANER == null) {
+			return;
+		}
+		for (MappedByteBuffer m : mapped) {
+			if (m == null) {
+				continue;
+			}
+			try {
+				INVOKE_CLEANER.invoke(UNSAFE, m);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				// left to the garbage collector
+			}
+		}
+	}
+
+	/**
+	 * Deletes the given table file, or has it deleted when the JVM exits if
+	 * that is not possible now.
+	 * 
+	 * @param f
+	 *            - the file to delete
+	 */
+	private static void delete(File f) {
+		if (!f.delete() && f.exists()) {
+			f.deleteOnExit();
+		}
+	}
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the number of <b>long</b>s in every encoding stored in this
+	 * set.
+	 */
+	private final int keyLength;
+
+	/**
+	 * Represents the directory in which the table files are created, or
+	 * <b>null</b> for the default temporary-file directory.
+	 */
+	private final File directory;
+
+	/**
+	 * Represents the file currently holding the table.
+	 */
+	private File file;
+
+	/**
+	 * Represents the mappings of <b>file</b>, one per chunk, or <b>null</b>
+	 * once this set has been closed.
+	 */
+	private MappedByteBuffer[] mappings;
+
+	/**
+	 * Represents the mapped chunks of <b>file</b>, viewed as <b>long</b>s, or
+	 * <b>null</b> once this set has been closed. Word w of the file is word
+	 * <b>w % CHUNK_WORDS</b> of chunk <b>w / CHUNK_WORDS</b>. The first
+	 * <b>capacity / 64</b> words are the bitmap of the slots in use; slot i
+	 * occupies the <b>keyLength</b> words after them starting at
+	 * <b>i * keyLength</b>.
+	 */
+	private LongBuffer[] chunks;
+
+	/**
+	 * Represents the number of slots in the table. Always a power of two.
+	 */
+	private long capacity;
+
+	/**
+	 * Represents the number of encodings in this set.
+	 */
+	private long size;
+
+	/**
+	 * Initializes an empty set for encodings of the given length, whose table
+	 * files are created in the given directory.
+	 * 
+	 * @param keyLength
+	 *            - the number of <b>long</b>s in every encoding to be stored
+	 * @param directory
+	 *            - the directory to create the table files in, or null for
+	 *            the default temporary-file directory
+	 * @throws IllegalArgumentException
+	 *             when keyLength is negative
+	 * @throws UncheckedIOException
+	 *             when the table file cannot be created or mapped
+	 */
+	public MappedConfigurationSet(int keyLength, File directory) {
+		if (keyLength < 0) {
+			throw new IllegalArgumentException("negative key length");
+		}
+		this.keyLength = keyLength;
+		this.directory = directory;
+		this.capacity = INITIAL_CAPACITY;
+		this.file = createFile();
+		try {
+			this.mappings = map(file, capacity);
+		} catch (UncheckedIOException uioe) {
+			delete(file);
+			throw uioe;
+		}
+		this.chunks = asLongs(mappings);
+		this.size = 0;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws IllegalStateException
+	 *             when this set has been closed
+	 */
+	@Override
+	public boolean contains(long[] key) {
+		checkOpen();
+		checkLength(key);
+		long slot = hash(key) & (capacity - 1);
+		while (isUsed(chunks, slot)) {
+			if (matches(slot, key)) {
+				return true;
+			}
+			slot = (slot + 1) & (capacity - 1);
+		}
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws IllegalStateException
+	 *             when this set has been closed
+	 * @throws UncheckedIOException
+	 *             when the table has to grow, and the new table file cannot
+	 *             be created or mapped
+	 */
+	@Override
+	public boolean add(long[] key) {
+		checkOpen();
+		checkLength(key);
+		long slot = hash(key) & (capacity - 1);
+		while (isUsed(chunks, slot)) {
+			if (matches(slot, key)) {
+				return false;
+			}
+			slot = (slot + 1) & (capacity - 1);
+		}
+		store(chunks, capacity, slot, key);
+		size++;
+
+		// keeping the load factor under 3/4
+		if (size * 4L > capacity * 3L) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Unmaps and deletes the table file. This set must not be used afterwards.
+	 */
+	@Override
+	public void close() {
+		if (chunks == null) {
+			return;
+		}
+		MappedByteBuffer[] oldMappings = mappings;
+		mappings = null;
+		chunks = null;
+		unmap(oldMappings);
+		delete(file);
+	}
+
+	/**
+	 * Doubles the capacity of the table, re-inserting every encoding into a
+	 * new file, and unmaps and deletes the old file.
+	 * 
+	 * @throws UncheckedIOException
+	 *             when the new table file cannot be created or mapped
+	 */
+	private void grow() {
+		MappedByteBuffer[] oldMappings = mappings;
+		LongBuffer[] oldChunks = chunks;
+		long oldCapacity = capacity;
+		File oldFile = file;
+
+		long newCapacity = oldCapacity << 1;
+		File newFile = createFile();
+		MappedByteBuffer[] newMappings;
+		try {
+			newMappings = map(newFile, newCapacity);
+		} catch (UncheckedIOException uioe) {
+			delete(newFile);
+			throw uioe;
+		}
+		LongBuffer[] newChunks = asLongs(newMappings);
+
+		long[] key = new long[keyLength];
+		for (long old = 0; old < oldCapacity; old++) {
+			if (!isUsed(oldChunks, old)) {
+				continue;
+			}
+			long base = (oldCapacity >>> 6) + old * keyLength;
+			for (int i = 0; i < keyLength; i++) {
+				key[i] = word(oldChunks, base + i);
+			}
+			long slot = hash(key) & (newCapacity - 1);
+			while (isUsed(newChunks, slot)) {
+				slot = (slot + 1) & (newCapacity - 1);
+			}
+			store(newChunks, newCapacity, slot, key);
+		}
+
+		capacity = newCapacity;
+		mappings = newMappings;
+		chunks = newChunks;
+		file = newFile;
+		unmap(oldMappings);
+		delete(oldFile);
+	}
+
+	/**
+	 * Creates a new, empty table file.
+	 * 
+	 * @return the new file
+	 * @throws UncheckedIOException
+	 *             when the file cannot be created
+	 */
+	private File createFile() {
+		try {
+			return File.createTempFile("configurations", ".tbl", directory);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+
+	/**
+	 * Sizes the given file for a table with the given number of slots, and
+	 * maps it into memory. The file is filled with zeros, so every slot is
+	 * free.
+	 * 
+	 * @param f
+	 *            - the file to map
+	 * @param slots
+	 *            - the number of slots of the table
+	 * @return the mappings of the chunks of the file
+	 * @throws UncheckedIOException
+	 *             when the file cannot be mapped
+	 */
+	private MappedByteBuffer[] map(File f, long slots) {
+		long words = (slots >>> 6) + slots * keyLength;
+		int numChunks = (int) ((words + CHUNK_WORDS - 1) >>> CHUNK_SHIFT);
+		MappedByteBuffer[] mapped = new MappedByteBuffer[numChunks];
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			raf.setLength(words * 8);
+			FileChannel channel = raf.getChannel();
+			for (int c = 0; c < numChunks; c++) {
+				long from = c * CHUNK_WORDS;
+				long length = Math.min(CHUNK_WORDS, words - from);
+				// the mapping stays valid after the channel is closed
+				mapped[c] = channel.map(FileChannel.MapMode.READ_WRITE,
+						from * 8, length * 8);
+			}
+		} catch (IOException ioe) {
+			unmap(mapped);
+			throw new UncheckedIOException(ioe);
+		}
+		return mapped;
+	}
+
+	/**
+	 * Returns views of the given mappings as <b>long</b>s in the native byte
+	 * order.
+	 * 
+	 * @param mapped
+	 *            - the mappings of the chunks of a table file
+	 * @return the mapped chunks of the table file
+	 */
+	private static LongBuffer[] asLongs(MappedByteBuffer[] mapped) {
+		LongBuffer[] table = new LongBuffer[mapped.length];
+		for (int c = 0; c < mapped.length; c++) {
+			table[c] = mapped[c].duplicate().order(ByteOrder.nativeOrder())
+					.asLongBuffer();
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the word with the given index of the given mapped table.
+	 * 
+	 * @param table
+	 *            - the mapped chunks of a table file
+	 * @param w
+	 *            - the index of the word within the file
+	 * @return the word
+	 */
+	private static long word(LongBuffer[] table, long w) {
+		return table[(int) (w >>> CHUNK_SHIFT)].get((int) (w & (CHUNK_WORDS - 1)));
+	}
+
+	/**
+	 * Overwrites the word with the given index of the given mapped table.
+	 * 
+	 * @param table
+	 *            - the mapped chunks of a table file
+	 * @param w
+	 *            - the index of the word within the file
+	 * @param value
+	 *            - the new value of the word
+	 */
+	private static void setWord(LongBuffer[] table, long w, long value) {
+		table[(int) (w >>> CHUNK_SHIFT)].put((int) (w & (CHUNK_WORDS - 1)),
+				value);
+	}
+
+	/**
+	 * Checks whether the given slot of the given mapped table is in use.
+	 * 
+	 * @param table
+	 *            - the mapped chunks of a table file
+	 * @param slot
+	 *            - the slot to check
+	 * @return whether the slot is in use
+	 */
+	private static boolean isUsed(LongBuffer[] table, long slot) {
+		return (word(table, slot >>> 6) & (1L << slot)) != 0;
+	}
+
+	/**
+	 * Copies the given encoding into the given free slot of the given mapped
+	 * table, and marks the slot as in use.
+	 * 
+	 * @param table
+	 *            - the mapped chunks of a table file
+	 * @param slots
+	 *            - the number of slots of the table
+	 * @param slot
+	 *            - the free slot to fill
+	 * @param key
+	 *            - the encoding to store
+	 */
+	private void store(LongBuffer[] table, long slots, long slot, long[] key) {
+		long base = (slots >>> 6) + slot * keyLength;
+		for (int i = 0; i < keyLength; i++) {
+			setWord(table, base + i, key[i]);
+		}
+		setWord(table, slot >>> 6, word(table, slot >>> 6) | (1L << slot));
+	}
+
+	/**
+	 * Checks whether the given slot of the table holds the given encoding.
+	 * 
+	 * @param slot
+	 *            - the slot to compare
+	 * @param key
+	 *            - the encoding to compare
+	 * @return whether the slot holds the encoding
+	 */
+	private boolean matches(long slot, long[] key) {
+		long base = (capacity >>> 6) + slot * keyLength;
+		for (int i = 0; i < keyLength; i++) {
+			if (word(chunks, base + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Throws an IllegalStateException if this set has been closed.
+	 */
+	private void checkOpen() {
+		if (chunks == null) {
+			throw new IllegalStateException("the set has been closed");
+		}
+	}
+
+	/**
+	 * Throws an IllegalArgumentException if the given encoding does not have
+	 * the length of this set's encodings.
+	 * 
+	 * @param key
+	 *            - the encoding to check
+	 */
+	private void checkLength(long[] key) {
+		if (key.length != keyLength) {
+			throw new IllegalArgumentException("expected a key of length "
+					+ keyLength + " but got one of length " + key.length);
+		}
+	}
+
+	/**
+	 * Returns a well-spread 64-bit hash of the given encoding.
+	 * 
+	 * @param key
+	 *            - the encoding
+	 * @return a hash of the encoding
+	 */
+	private long hash(long[] key) {
+		long h = 0x9E3779B97F4A7C15L;
+		for (int i = 0; i < keyLength; i++) {
+			h = (h ^ key[i]) * 0xBF58476D1CE4E5B9L;
+			h ^= h >>> 31;
+		}
+		return h ^ (h >>> 32);
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
@@ -0,0 +1,310 @@
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A MoveTraceWriter writes a move trace, i.e. the series of moves that lead
+ * from an initial Tray to a desired configuration, to an OutputStream. Each
+ * line contains four numbers and corresponds to a single move. The first two
+ * numbers represent the row/column indices of the upper left corner of the
+ * moving Block <i>before</i> the move. The last two numbers represent the
+ * row/column indices of the upper left corner of the moving Block
+ * <i>after</i> the move. A Block that slides by more than one Point (see
+ * <b>writeSlide</b>) is written as one line per Point of the slide.
+ * </p>
+ * 
+ * <p>
+ * The digits of every move are formatted straight from the row and column indices of its
+ * Points into a byte buffer, which is handed to the stream whenever it is
+ * full and when <b>flush</b> is called. Printing a solution therefore costs
+ * neither a String nor a call to the stream per move.
+ * </p>
+ * 
+ * <p>
+ * A MoveTraceWriter can also keep the moves it writes, packed into a
+ * <b>long</b> each (see <b>startRecording</b>), so that a solution can be
+ * stored once it has been written, e.g. by a SolutionCache.
+ * </p>
+ * 
+ * <p>
+ * A MoveTraceWriter is not thread-safe.
+ * </p>
+ */
+public class MoveTraceWriter implements Flushable {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The number of bytes buffered before they are written to the stream.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The largest number of bytes a single move takes up: four indices of at
+	 * most five digits each, three spaces and a line separator.
+	 */
+	private static final int MAX_MOVE_LENGTH = 4 * 5 + 3 + 2;
+
+	/**
+	 * Returns the Direction in which a Block at <b>from</b> must move to get
+	 * closer to <b>to</b>. The two Points must be distinct and must share a
+	 * row or a column, which is the case for the positions before and after a
+	 * move or a slide.
+	 * 
+	 * @param from
+	 *            - the position the Block moves from
+	 * @param to
+	 *            - the position the Block moves towards
+	 * @return the Direction from from to to
+	 */
+	private static Direction directionOf(Point from, Point to) {
+		if (from.rowIdx == to.rowIdx) {
+			return from.colIdx < to.colIdx ? Direction.RIGHT : Direction.LEFT;
+		}
+		return from.rowIdx < to.rowIdx ? Direction.DOWN : Direction.UP;
+	}
+
+	/**
+	 * Packs the move of a Block from <b>from</b> to <b>to</b> into a
+	 * <b>long</b>, one 16-bit field per index: from's row and column index in
+	 * the upper half, to's in the lower half.
+	 * 
+	 * @param from
+	 *            - the position of the Block before the move
+	 * @param to
+	 *            - the position of the Block after the move
+	 * @return the packed move
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public static long packMove(Point from, Point to) {
+		return ((long) from.rowIdx << 48) | ((long) from.colIdx << 32)
+				| ((long) to.rowIdx << 16) | to.colIdx;
+	}
+
+	/**
+	 * Returns the position of the Block before the given packed move (see
+	 * <b>packMove</b>).
+	 * 
+	 * @param move
+	 *            - the packed move
+	 * @return the position of the Block before the move
+	 */
+	public static Point moveFrom(long move) {
+		return Point.getInstance((int) (move >>> 48) & 0xFFFF,
+				(int) (move >>> 32) & 0xFFFF);
+	}
+
+	/**
+	 * Returns the position of the Block after the given packed move (see
+	 * <b>packMove</b>).
+	 * 
+	 * @param move
+	 *            - the packed move
+	 * @return the position of the Block after the move
+	 */
+	public static Point moveTo(long move) {
+		return Point.getInstance((int) (move >>> 16) & 0xFFFF,
+				(int) move & 0xFFFF);
+	}
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the stream that the moves are written to.
+	 */
+	private final OutputStream out;
+
+	/**
+	 * Represents the bytes of the moves not yet written to <b>out</b>.
+	 */
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * Represents the number of bytes in <b>buffer</b>.
+	 */
+	private int length = 0;
+
+	/**
+	 * Represents the bytes of the line separator.
+	 */
+	private final byte[] lineSeparator = System.lineSeparator().getBytes();
+
+	/**
+	 * Represents the number of moves written so far.
+	 */
+	private int numMoves = 0;
+
+	/**
+	 * Represents the packed moves (see <b>packMove</b>) written since
+	 * <b>startRecording</b> was called, or <b>null</b> if it has not been.
+	 */
+	private long[] recorded = null;
+
+	/**
+	 * Represents the number of moves in <b>recorded</b>.
+	 */
+	private int numRecorded = 0;
+
+	/**
+	 * Initializes a MoveTraceWriter that writes to the given stream.
+	 * 
+	 * @param out
+	 *            - the stream to write the moves to
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public MoveTraceWriter(OutputStream out) {
+		if (out == null) {
+			throw new NullPointerException();
+		}
+		this.out = out;
+	}
+
+	/**
+	 * Writes a single move of a Block from <b>from</b> to <b>to</b>.
+	 * 
+	 * @param from
+	 *            - the position of the Block before the move
+	 * @param to
+	 *            - the position of the Block after the move
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 * @throws UncheckedIOException
+	 *             when the stream fails
+	 */
+	public void writeMove(Point from, Point to) {
+		if (length + MAX_MOVE_LENGTH > buffer.length) {
+			flushBuffer();
+		}
+		writeIndex(from.rowIdx);
+		buffer[length++] = ' ';
+		writeIndex(from.colIdx);
+		buffer[length++] = ' ';
+		writeIndex(to.rowIdx);
+		buffer[length++] = ' ';
+		writeIndex(to.colIdx);
+		for (byte b : lineSeparator) {
+			buffer[length++] = b;
+		}
+		numMoves++;
+
+		if (recorded != null) {
+			if (numRecorded == recorded.length) {
+				recorded = Arrays.copyOf(recorded, numRecorded << 1);
+			}
+			recorded[numRecorded++] = packMove(from, to);
+		}
+	}
+
+	/**
+	 * Writes the moves of a Block sliding from <b>from</b> to <b>to</b>, one
+	 * move per Point of the slide. The two Points must share a row or a
+	 * column; nothing is written if they are equal.
+	 * 
+	 * @param from
+	 *            - the position of the Block before the slide
+	 * @param to
+	 *            - the position of the Block after the slide
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 * @throws UncheckedIOException
+	 *             when the stream fails
+	 */
+	public void writeSlide(Point from, Point to) {
+		if (from.equals(to)) {
+			return;
+		}
+		Direction d = directionOf(from, to);
+		for (Point p = from; !p.equals(to); p = p.go(d)) {
+			writeMove(p, p.go(d));
+		}
+	}
+
+	/**
+	 * Makes this writer keep every move written from now on, in addition to
+	 * writing it to the stream. Any moves kept before are dropped.
+	 */
+	public void startRecording() {
+		recorded = new long[64];
+		numRecorded = 0;
+	}
+
+	/**
+	 * Returns the packed moves (see <b>packMove</b>) written since
+	 * <b>startRecording</b> was last called, in the order they were written.
+	 * 
+	 * @return the packed moves written since recording started
+	 * @throws IllegalStateException
+	 *             when startRecording has never been called
+	 */
+	public long[] recordedMoves() {
+		if (recorded == null) {
+			throw new IllegalStateException("not recording");
+		}
+		return Arrays.copyOf(recorded, numRecorded);
+	}
+
+	/**
+	 * Returns the number of moves written so far.
+	 * 
+	 * @return the number of moves written so far
+	 */
+	public int numMoves() {
+		return numMoves;
+	}
+
+	/**
+	 * Writes every buffered move to the stream, and flushes the stream.
+	 * 
+	 * @throws UncheckedIOException
+	 *             when the stream fails
+	 */
+	@Override
+	public void flush() {
+		flushBuffer();
+		try {
+			out.flush();
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+
+	/**
+	 * Writes every buffered move to the stream, and empties the buffer.
+	 * 
+	 * @throws UncheckedIOException
+	 *             when the stream fails
+	 */
+	private void flushBuffer() {
+		try {
+			out.write(buffer, 0, length);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		length = 0;
+	}
+
+	/**
+	 * Appends the decimal digits of the given non-negative index to the
+	 * buffer.
+	 * 
+	 * @param index
+	 *            - the row or column index to append
+	 */
+	private void writeIndex(int index) {
+		int digits = 1;
+		for (int rest = index; rest >= 10; rest /= 10) {
+			digits++;
+		}
+		for (int k = length + digits - 1; k >= length; k--) {
+			buffer[k] = (byte) ('0' + index % 10);
+			index /= 10;
+		}
+		length += digits;
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
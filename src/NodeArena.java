@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A NodeArena records the moves of a search as a tree of <i>nodes</i>, each of
+ * which is a plain entry of a few growable <b>int</b> arrays rather than an
+ * object: the id of its parent node, and the positions of the moved Block
+ * before and after the move, packed into an <b>int</b> each. Nodes are
+ * identified by their index in the arrays, and the root, which stands for the
+ * initial Tray, is node <b>ROOT</b>.
+ * </p>
+ * 
+ * <p>
+ * A SolveFringeElement whose moves are recorded in a NodeArena (see
+ * <b>SolveFringeElement.recordIn</b>) keeps only the id of its node instead of
+ * a reference to its parent element. Its ancestors, and in particular their
+ * Trays, can therefore be garbage-collected as soon as they leave the fringe,
+ * and a path costs 12 bytes per node.
+ * </p>
+ * 
+ * <p>
+ * A NodeArena is not thread-safe, except that the nodes reserved at once by
+ * <b>reserve</b> may be filled in by several threads at the same time (see
+ * <b>set</b>).
+ * </p>
+ */
+public class NodeArena {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The id of the root node, which stands for the initial Tray.
+	 */
+	public static final int ROOT = 0;
+
+	/**
+	 * The number of nodes that a new NodeArena has room for.
+	 */
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	/**
+	 * Packs the given Point into an <b>int</b>, its row index in the upper and
+	 * its column index in the lower 16 bits.
+	 * 
+	 * @param p
+	 *            - the Point to pack
+	 * @return the packed Point
+	 */
+	private static int pack(Point p) {
+		return (p.rowIdx << 16) | p.colIdx;
+	}
+
+	/**
+	 * Returns the Point packed by <b>pack</b> into the given <b>int</b>.
+	 * 
+	 * @param packed
+	 *            - the packed Point
+	 * @return the Point
+	 */
+	private static Point unpack(int packed) {
+		return Point.getInstance(packed >>> 16, packed & 0xFFFF);
+	}
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the id of the parent of every node. The parent of the root is
+	 * -1.
+	 */
+	private int[] parents = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Represents the packed position of the moved Block in the parent node's
+	 * configuration, for every node but the root.
+	 */
+	private int[] oldPositions = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Represents the packed position of the moved Block in the node's own
+	 * configuration, for every node but the root.
+	 */
+	private int[] newPositions = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Represents the number of nodes recorded, including the root.
+	 */
+	private int size;
+
+	/**
+	 * Initializes a NodeArena that holds only the root node.
+	 */
+	public NodeArena() {
+		parents[ROOT] = -1;
+		size = 1;
+	}
+
+	/**
+	 * Records a node for the configuration reached from the given node by
+	 * moving a Block from <b>oldBlockPosition</b> to
+	 * <b>newBlockPosition</b>, and returns its id.
+	 * 
+	 * @param parent
+	 *            - the id of the node that the move was made from
+	 * @param oldBlockPosition
+	 *            - the position of the moved Block before the move
+	 * @param newBlockPosition
+	 *            - the position of the moved Block after the move
+	 * @return the id of the new node
+	 * @throws IndexOutOfBoundsException
+	 *             when parent is not the id of a node of this arena
+	 * @throws NullPointerException
+	 *             when either Point is null
+	 */
+	public int add(int parent, Point oldBlockPosition, Point newBlockPosition) {
+		checkNode(parent);
+		int node = reserve(1);
+		set(node, parent, oldBlockPosition, newBlockPosition);
+		return node;
+	}
+
+	/**
+	 * Reserves the ids of the given number of nodes, which follow each other,
+	 * and returns the first of them. The nodes are filled in afterwards by
+	 * <b>set</b>, so that a whole level of a search can be recorded by
+	 * several threads at once: each thread sets its share of the nodes,
+	 * while no node is added or reserved.
+	 * 
+	 * @param count
+	 *            - the number of nodes to reserve
+	 * @return the id of the first node reserved
+	 * @throws IllegalArgumentException
+	 *             when count is negative
+	 */
+	public int reserve(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("negative count");
+		}
+		if (size + count > parents.length) {
+			int newLength = Math.max(parents.length << 1, size + count);
+			parents = Arrays.copyOf(parents, newLength);
+			oldPositions = Arrays.copyOf(oldPositions, newLength);
+			newPositions = Arrays.copyOf(newPositions, newLength);
+		}
+		int first = size;
+		size += count;
+		return first;
+	}
+
+	/**
+	 * Fills in the given reserved node as the configuration reached from the
+	 * given node by moving a Block from <b>oldBlockPosition</b> to
+	 * <b>newBlockPosition</b>. Different nodes may be set by different
+	 * threads at the same time, as long as no node is added or reserved
+	 * meanwhile; the nodes set are only visible to other threads once those
+	 * threads have synchronized with the setting ones, e.g. by joining them.
+	 * 
+	 * @param node
+	 *            - the id of a node reserved by <b>reserve</b>
+	 * @param parent
+	 *            - the id of the node that the move was made from
+	 * @param oldBlockPosition
+	 *            - the position of the moved Block before the move
+	 * @param newBlockPosition
+	 *            - the position of the moved Block after the move
+	 * @throws IndexOutOfBoundsException
+	 *             when node is the root, or either id is not the id of a node
+	 *             of this arena
+	 * @throws NullPointerException
+	 *             when either Point is null
+	 */
+	public void set(int node, int parent, Point oldBlockPosition,
+			Point newBlockPosition) {
+		checkMove(node);
+		checkNode(parent);
+		parents[node] = parent;
+		oldPositions[node] = pack(oldBlockPosition);
+		newPositions[node] = pack(newBlockPosition);
+	}
+
+	/**
+	 * Returns the number of nodes recorded, including the root.
+	 * 
+	 * @return the number of nodes recorded
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the id of the parent of the given node, or -1 for the root.
+	 * 
+	 * @param node
+	 *            - the id of a node of this arena
+	 * @return the id of the parent of the node
+	 * @throws IndexOutOfBoundsException
+	 *             when node is not the id of a node of this arena
+	 */
+	public int parentOf(int node) {
+		checkNode(node);
+		return parents[node];
+	}
+
+	/**
+	 * Returns the position of the Block moved to reach the given node, in its
+	 * parent's configuration.
+	 * 
+	 * @param node
+	 *            - the id of a node of this arena other than the root
+	 * @return the position of the moved Block before the move
+	 * @throws IndexOutOfBoundsException
+	 *             when node is the root or not the id of a node of this arena
+	 */
+	public Point oldPositionOf(int node) {
+		checkMove(node);
+		return unpack(oldPositions[node]);
+	}
+
+	/**
+	 * Returns the position of the Block moved to reach the given node, in the
+	 * node's own configuration.
+	 * 
+	 * @param node
+	 *            - the id of a node of this arena other than the root
+	 * @return the position of the moved Block after the move
+	 * @throws IndexOutOfBoundsException
+	 *             when node is the root or not the id of a node of this arena
+	 */
+	public Point newPositionOf(int node) {
+		checkMove(node);
+		return unpack(newPositions[node]);
+	}
+
+	/**
+	 * Returns the ids of the nodes on the path from the root to the given
+	 * node, in that order, leaving out the root itself.
+	 * 
+	 * @param node
+	 *            - the id of a node of this arena
+	 * @return the ids of the nodes on the path, starting right after the root
+	 *         and ending at node
+	 * @throws IndexOutOfBoundsException
+	 *             when node is not the id of a node of this arena
+	 */
+	public int[] pathTo(int node) {
+		checkNode(node);
+		int length = 0;
+		for (int n = node; n != ROOT; n = parents[n]) {
+			length++;
+		}
+		int[] path = new int[length];
+		for (int n = node; n != ROOT; n = parents[n]) {
+			path[--length] = n;
+		}
+		return path;
+	}
+
+	/**
+	 * Throws an IndexOutOfBoundsException if the given id is not the id of a
+	 * node of this arena.
+	 * 
+	 * @param node
+	 *            - the id to check
+	 */
+	private void checkNode(int node) {
+		if (node < 0 || node >= size) {
+			throw new IndexOutOfBoundsException("no node " + node);
+		}
+	}
+
+	/**
+	 * Throws an IndexOutOfBoundsException if the given id is the root or is
+	 * not the id of a node of this arena.
+	 * 
+	 * @param node
+	 *            - the id to check
+	 */
+	private void checkMove(int node) {
+		if (node == ROOT) {
+			throw new IndexOutOfBoundsException("the root has no move");
+		}
+		checkNode(node);
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
@@ -0,0 +1,291 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * A ParallelBreadthFirstSearch performs breadth-first search on a puzzle using
+ * every core of the machine. The search is <i>level-synchronous</i>: all the
+ * configurations of one level are expanded in parallel, and the next level is
+ * only started once the whole current level is done. Within a level, the work
+ * is split recursively into chunks of elements on a ForkJoinPool; each chunk
+ * builds its own list of children, and the lists are concatenated as the
+ * chunks are joined, so no lock is ever taken on the next level.
+ * </p>
+ * 
+ * <p>
+ * Duplicates are detected against a ConcurrentConfigurationSet shared by all
+ * threads. A child is kept only by the thread whose insertion into the set
+ * succeeded, so every configuration appears on at most one level, exactly
+ * once. Since every level is complete
+ * before the next one starts, the solution found is a shortest one.
+ * </p>
+ * 
+ * <p>
+ * Every thread works on its own Trays; the only shared state is the visited
+ * set and the Point and Block pools. The Block pool is safe for concurrent
+ * use, but the Point pool is only safe once it has been filled, since
+ * <b>Point.getInstance</b> creates missing Points without synchronization.
+ * Call <b>Point.preparePool</b> for the dimensions of the initial Tray
+ * before running the search.
+ * </p>
+ */
+public class ParallelBreadthFirstSearch {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The number of elements below which a chunk of a level is expanded by a
+	 * single thread instead of being split further.
+	 */
+	private static final int CHUNK_SIZE = 16;
+
+	/**
+	 * The number of elements below which a chunk of a level is recorded in
+	 * the NodeArena by a single thread instead of being split further.
+	 * Recording an element is much cheaper than expanding it, so the chunks
+	 * are bigger.
+	 */
+	private static final int RECORD_CHUNK_SIZE = 1 << 10;
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the initial Tray configuration of the search.
+	 */
+	private final Tray initialTray;
+
+	/**
+	 * Represents the collection of blocks in the desired final Tray
+	 * configuration.
+	 */
+	private final Collection<Block> desiredBlocks;
+
+	/**
+	 * Represents the number of threads that expand each level.
+	 */
+	private final int parallelism;
+
+	/**
+	 * Represents the encodings of all the configurations seen so far, shared
+	 * by all threads.
+	 */
+	private final ConcurrentConfigurationSet seen;
+
+	/**
+	 * Represents the element at which a desired configuration has been found,
+	 * if any. Once it is set, the remaining chunks of the level stop early.
+	 */
+	private final AtomicReference<SolveFringeElement> found = new AtomicReference<SolveFringeElement>();
+
+	/**
+	 * Initializes a search from the given initial Tray towards the given
+	 * desired Blocks, on the given number of threads.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration to start the search process
+	 *            at
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @param parallelism
+	 *            - the number of threads that expand each level
+	 * @throws IllegalArgumentException
+	 *             when parallelism is not positive
+	 * @throws NullPointerException
+	 *             when initialTray or desiredBlocks is null
+	 */
+	public ParallelBreadthFirstSearch(Tray initialTray,
+			Collection<Block> desiredBlocks, int parallelism) {
+		if (initialTray == null || desiredBlocks == null) {
+			throw new NullPointerException();
+		}
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("non-positive parallelism");
+		}
+		this.initialTray = initialTray;
+		this.desiredBlocks = desiredBlocks;
+		this.parallelism = parallelism;
+		this.seen = new ConcurrentConfigurationSet(
+				initialTray.encodingLength());
+	}
+
+	/**
+	 * Runs the search and returns the element at which a desired configuration
+	 * has been found, or <b>null</b> if there is no solution.
+	 * 
+	 * @return the element at which a desired configuration has been found, or
+	 *         null if there is no solution
+	 * @throws IllegalStateException
+	 *             when any of the Trays in the search process fails to keep its
+	 *             invariants (only when Tray.checkInvariants is set to true)
+	 */
+	public SolveFringeElement search() {
+		SolveFringeElement root = new SolveFringeElement(initialTray, null,
+				null, null);
+		if (Solver.isDesiredConfiguration(initialTray, desiredBlocks)) {
+			return root;
+		}
+		seen.add(initialTray.encode());
+
+		// a level's elements record their moves in an arena, so that they do
+		// not keep the Trays of the earlier levels alive
+		NodeArena nodes = new NodeArena();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<SolveFringeElement> level = new ArrayList<SolveFringeElement>();
+			level.add(root.recordIn(nodes));
+			while (!level.isEmpty()) {
+				level = pool.invoke(new ExpandTask(level, 0, level.size()));
+				if (found.get() != null) {
+					return found.get();
+				}
+				// the new level gets a range of node ids of its own, which
+				// every thread fills in for its chunk of the level
+				int first = nodes.reserve(level.size());
+				pool.invoke(new RecordTask(level, nodes, first, 0, level
+						.size()));
+			}
+			return null;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the number of configurations seen so far.
+	 * 
+	 * @return the number of configurations seen so far
+	 */
+	public long numSeen() {
+		return seen.size();
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+
+	/**
+	 * Expands a contiguous chunk of a level, and returns the new
+	 * configurations found in it.
+	 */
+	private class ExpandTask extends RecursiveTask<List<SolveFringeElement>> {
+
+		/**
+		 * Represents the level being expanded.
+		 */
+		private final List<SolveFringeElement> level;
+
+		/**
+		 * Represents the index of the first element of this chunk.
+		 */
+		private final int from;
+
+		/**
+		 * Represents the index right after the last element of this chunk.
+		 */
+		private final int to;
+
+		ExpandTask(List<SolveFringeElement> level, int from, int to) {
+			this.level = level;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<SolveFringeElement> compute() {
+			if (to - from > CHUNK_SIZE) {
+				int mid = (from + to) >>> 1;
+				ExpandTask left = new ExpandTask(level, from, mid);
+				left.fork();
+				List<SolveFringeElement> rightResult = new ExpandTask(level,
+						mid, to).compute();
+				List<SolveFringeElement> leftResult = left.join();
+				leftResult.addAll(rightResult);
+				return leftResult;
+			}
+
+			List<SolveFringeElement> next = new ArrayList<SolveFringeElement>();
+			List<SolveFringeElement> children = new ArrayList<SolveFringeElement>();
+			for (int k = from; k < to && found.get() == null; k++) {
+				children.clear();
+				Solver.expand(level.get(k), children);
+				for (SolveFringeElement child : children) {
+					if (!seen.add(child.tray.encode())) {
+						continue;
+					}
+					if (Solver.isDesiredConfiguration(child.tray, desiredBlocks)) {
+						found.compareAndSet(null, child);
+						return next;
+					}
+					next.add(child);
+				}
+			}
+			return next;
+		}
+
+		// compiler-generated UID
+		private static final long serialVersionUID = 5342271408339813564L;
+	}
+
+	/**
+	 * Records a contiguous chunk of a new level in the NodeArena, as the nodes
+	 * reserved for it, replacing every element by the recorded one.
+	 */
+	private static class RecordTask extends RecursiveAction {
+
+		/**
+		 * Represents the new level being recorded.
+		 */
+		private final List<SolveFringeElement> level;
+
+		/**
+		 * Represents the NodeArena that the level is recorded in.
+		 */
+		private final NodeArena nodes;
+
+		/**
+		 * Represents the id of the node reserved for the first element of the
+		 * level; element k is recorded as node <b>first + k</b>.
+		 */
+		private final int first;
+
+		/**
+		 * Represents the index of the first element of this chunk.
+		 */
+		private final int from;
+
+		/**
+		 * Represents the index right after the last element of this chunk.
+		 */
+		private final int to;
+
+		RecordTask(List<SolveFringeElement> level, NodeArena nodes, int first,
+				int from, int to) {
+			this.level = level;
+			this.nodes = nodes;
+			this.first = first;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > RECORD_CHUNK_SIZE) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new RecordTask(level, nodes, first, from, mid),
+						new RecordTask(level, nodes, first, mid, to));
+				return;
+			}
+			// the chunks write to disjoint slots of the list and of the arena
+			for (int k = from; k < to; k++) {
+				level.set(k, level.get(k).recordIn(nodes, first + k));
+			}
+		}
+
+		// compiler-generated UID
+		private static final long serialVersionUID = -2291753906452213388L;
+	}
+}
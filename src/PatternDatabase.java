@@ -0,0 +1,713 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * <p>
+ * A PatternDatabase holds the exact number of moves that a <i>pattern</i> of a
+ * few of a Tray's Blocks needs to meet the goal when every other Block is
+ * taken off the Tray, for every placement of the pattern Blocks. Since taking
+ * Blocks off can only make moves legal that were not, and since a solution of
+ * the whole Tray moves the pattern Blocks at least that many times, this
+ * number is an admissible estimate of the moves still needed (see
+ * PatternDatabaseHeuristic). Unlike a ManhattanHeuristic, it accounts for the
+ * pattern Blocks getting in each other's way.
+ * </p>
+ * 
+ * <p>
+ * The pattern consists of every Block of the shapes of the goal Blocks that
+ * it takes into account, so that no Block left out of the pattern can meet a
+ * goal in the place of one that is in it, and then of as many of the largest
+ * remaining Blocks as the given number of entries allows. A placement of
+ * <i>k</i> pattern Blocks on a Tray of <i>N</i> Points is indexed as a
+ * <i>k</i>-digit number in base <i>N</i>, whose <i>i</i>-th digit is the upper
+ * left position (as <b>rowIdx * colSize + colIdx</b>) of the <i>i</i>-th
+ * pattern Block, and every entry is a single byte: the number of moves, at
+ * most 254, or 255 if the goal cannot be met from that placement at all.
+ * </p>
+ * 
+ * <p>
+ * A PatternDatabase is built by a breadth-first search from every placement
+ * that meets the goal (see <b>build</b>); since every move can be taken back,
+ * this finds the distance <i>to</i> the goal of every placement. It depends
+ * only on the <i>layout</i> of a puzzle, i.e. on the dimensions of the Tray,
+ * its Block shapes and the goal, so it is saved to a file named after the
+ * layout (see <b>save</b>) and serves every puzzle of that layout, whatever
+ * its initial configuration. <b>load</b> memory-maps such a file, so only the
+ * pages of the entries actually looked up are ever read from disk.
+ * </p>
+ */
+public class PatternDatabase {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The magic number at the start of a pattern database file ("TPD1").
+	 */
+	private static final int MAGIC = 0x54504431;
+
+	/**
+	 * The entry of a placement from which the goal cannot be met.
+	 */
+	private static final int UNREACHABLE = 255;
+
+	/**
+	 * The largest number of moves that an entry can hold; larger numbers are
+	 * stored as this one, which keeps the estimate admissible.
+	 */
+	private static final int MAX_DISTANCE = 254;
+
+	/**
+	 * Returns the name of the file that the PatternDatabase of the layout of
+	 * the given puzzle is saved in, within a directory of pattern databases.
+	 * The name is derived from the dimensions of the Tray, the multiset of its
+	 * Block shapes and the set of desired Blocks.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @return the name of the file of the layout
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public static String fileNameOf(Tray initialTray,
+			Collection<Block> desiredBlocks) {
+		return String.format("%016x.pdb", layoutOf(initialTray, desiredBlocks));
+	}
+
+	/**
+	 * Returns a 64-bit hash of the layout of the given puzzle.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @return the hash of the layout
+	 */
+	private static long layoutOf(Tray initialTray,
+			Collection<Block> desiredBlocks) {
+		long[] shapes = new long[initialTray.numBlocks];
+		for (int i = 0; i < shapes.length; i++) {
+			shapes[i] = initialTray.getBlock(i).shapeId();
+		}
+		Arrays.sort(shapes);
+		long[] goals = new long[desiredBlocks.size()];
+		int i = 0;
+		for (Block b : desiredBlocks) {
+			goals[i++] = ((long) b.getUpperLeft().rowIdx << 48)
+					| ((long) b.getUpperLeft().colIdx << 32) | b.shapeId();
+		}
+		Arrays.sort(goals);
+
+		long h = SolutionCache.mix(MAGIC);
+		h = SolutionCache.mix(h ^ (((long) initialTray.rowSize << 16) | initialTray.colSize));
+		h = SolutionCache.mix(h ^ shapes.length);
+		for (long shape : shapes) {
+			h = SolutionCache.mix(h ^ shape);
+		}
+		h = SolutionCache.mix(h ^ goals.length);
+		for (int k = 0; k < goals.length; k++) {
+			if (k == 0 || goals[k] != goals[k - 1]) {
+				h = SolutionCache.mix(h ^ goals[k]);
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Builds the PatternDatabase of the layout of the given puzzle, with a
+	 * pattern of as many Blocks as the given number of entries allows (see the
+	 * Javadoc on this class).
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @param maxEntries
+	 *            - the largest number of entries, i.e. bytes, that the
+	 *            PatternDatabase may take; at most 2GB
+	 * @return the PatternDatabase of the layout
+	 * @throws IllegalArgumentException
+	 *             when maxEntries is larger than 2GB, or too small for a
+	 *             pattern with all the Blocks of even a single goal shape
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public static PatternDatabase build(Tray initialTray,
+			Collection<Block> desiredBlocks, long maxEntries) {
+		if (maxEntries > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("too many entries: "
+					+ maxEntries);
+		}
+		int numPoints = initialTray.rowSize * initialTray.colSize;
+
+		// the indices of the Tray's Blocks by shape
+		Map<Integer, List<Integer>> blocksByShape = new TreeMap<Integer, List<Integer>>();
+		for (int i = 0; i < initialTray.numBlocks; i++) {
+			int shape = initialTray.getBlock(i).shapeId();
+			if (!blocksByShape.containsKey(shape)) {
+				blocksByShape.put(shape, new ArrayList<Integer>());
+			}
+			blocksByShape.get(shape).add(i);
+		}
+
+		// the goal shapes with the fewest Blocks go into the pattern first
+		List<Integer> goalShapes = new ArrayList<Integer>();
+		for (Block b : desiredBlocks) {
+			if (blocksByShape.containsKey(b.shapeId())
+					&& !goalShapes.contains(b.shapeId())) {
+				goalShapes.add(b.shapeId());
+			}
+		}
+		Collections.sort(goalShapes, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer s1, Integer s2) {
+				int c = blocksByShape.get(s1).size()
+						- blocksByShape.get(s2).size();
+				return (c != 0) ? c : s1 - s2;
+			}
+		});
+		List<Integer> pattern = new ArrayList<Integer>();
+		Set<Integer> patternShapes = new HashSet<Integer>();
+		for (int shape : goalShapes) {
+			List<Integer> blocks = blocksByShape.get(shape);
+			if (numEntries(numPoints, pattern.size() + blocks.size()) > maxEntries) {
+				continue;
+			}
+			pattern.addAll(blocks);
+			patternShapes.add(shape);
+		}
+		if (pattern.isEmpty()) {
+			throw new IllegalArgumentException(
+					"no goal shape fits in a pattern of " + maxEntries
+							+ " entries");
+		}
+
+		// then the largest of the other Blocks, which get in the way most
+		List<Integer> others = new ArrayList<Integer>();
+		for (int i = 0; i < initialTray.numBlocks; i++) {
+			if (!pattern.contains(i)) {
+				others.add(i);
+			}
+		}
+		final Tray tray = initialTray;
+		Collections.sort(others, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i, Integer j) {
+				Block b1 = tray.getBlock(i);
+				Block b2 = tray.getBlock(j);
+				int c = b2.width * b2.height - b1.width * b1.height;
+				return (c != 0) ? c : i - j;
+			}
+		});
+		for (int i : others) {
+			if (numEntries(numPoints, pattern.size() + 1) > maxEntries) {
+				break;
+			}
+			pattern.add(i);
+		}
+
+		int[] shapes = new int[pattern.size()];
+		for (int k = 0; k < shapes.length; k++) {
+			shapes[k] = initialTray.getBlock(pattern.get(k)).shapeId();
+		}
+		List<Block> goals = new ArrayList<Block>();
+		for (Block b : new LinkedHashSet<Block>(desiredBlocks)) {
+			if (patternShapes.contains(b.shapeId())) {
+				goals.add(b);
+			}
+		}
+
+		PatternDatabase pdb = new PatternDatabase(initialTray.rowSize,
+				initialTray.colSize, shapes, goals,
+				layoutOf(initialTray, desiredBlocks),
+				ByteBuffer.allocate((int) numEntries(numPoints, shapes.length)),
+				0);
+		pdb.fill();
+		pdb.bind(initialTray);
+		return pdb;
+	}
+
+	/**
+	 * Returns the number of entries of a pattern of the given number of
+	 * Blocks on a Tray of the given number of Points, or Long.MAX_VALUE if it
+	 * does not fit in a <b>long</b>.
+	 * 
+	 * @param numPoints
+	 *            - the number of Points of the Tray
+	 * @param numBlocks
+	 *            - the number of Blocks of the pattern
+	 * @return the number of entries
+	 */
+	private static long numEntries(int numPoints, int numBlocks) {
+		long n = 1;
+		for (int k = 0; k < numBlocks; k++) {
+			if (n > Long.MAX_VALUE / numPoints) {
+				return Long.MAX_VALUE;
+			}
+			n *= numPoints;
+		}
+		return n;
+	}
+
+	/**
+	 * Loads the PatternDatabase of the layout of the given puzzle from the
+	 * given directory, if it has been saved there, by memory-mapping its file.
+	 * 
+	 * @param directory
+	 *            - the directory of pattern databases
+	 * @param initialTray
+	 *            - the initial Tray configuration
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @return the PatternDatabase of the layout, or <b>null</b> if there is
+	 *         none in the directory
+	 * @throws IOException
+	 *             when the file cannot be read or mapped, or is not the
+	 *             pattern database of the layout
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public static PatternDatabase load(Path directory, Tray initialTray,
+			Collection<Block> desiredBlocks) throws IOException {
+		Path path = directory.resolve(fileNameOf(initialTray, desiredBlocks));
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+		ByteBuffer map;
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(path + " is too big");
+			}
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try {
+			if (map.getInt() != MAGIC) {
+				throw new IOException(path + " is not a pattern database");
+			}
+			long layout = map.getLong();
+			int rowSize = map.getInt();
+			int colSize = map.getInt();
+			int[] shapes = new int[map.getInt()];
+			for (int k = 0; k < shapes.length; k++) {
+				shapes[k] = map.getInt();
+			}
+			if (layout != layoutOf(initialTray, desiredBlocks)
+					|| rowSize != initialTray.rowSize
+					|| colSize != initialTray.colSize) {
+				throw new IOException(path
+						+ " is not the pattern database of this puzzle");
+			}
+			List<Block> goals = new ArrayList<Block>();
+			for (int numGoals = map.getInt(); numGoals > 0; numGoals--) {
+				int row = map.getInt();
+				int col = map.getInt();
+				int shape = map.getInt();
+				goals.add(Block.getInstance(Point.getInstance(row, col),
+						(shape & 0xFFFF) + 1, (shape >>> 16) + 1));
+			}
+			long numEntries = numEntries(rowSize * colSize, shapes.length);
+			if (map.remaining() != numEntries) {
+				throw new IOException(path + " has been cut short");
+			}
+			PatternDatabase pdb = new PatternDatabase(rowSize, colSize,
+					shapes, goals, layout, map, map.position());
+			pdb.bind(initialTray);
+			return pdb;
+		} catch (RuntimeException re) {
+			throw new IOException(path + " is damaged: " + re, re);
+		}
+	}
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represent the dimensions of the Tray.
+	 */
+	private final int rowSize, colSize;
+
+	/**
+	 * Represents the shape identifier (see <b>Block.shapeId()</b>) of every
+	 * pattern Block, in the order of the digits of an index.
+	 */
+	private final int[] shapes;
+
+	/**
+	 * Represents the goal Blocks that the pattern Blocks have to meet.
+	 */
+	private final List<Block> goals;
+
+	/**
+	 * Represents the hash of the layout of this PatternDatabase.
+	 */
+	private final long layout;
+
+	/**
+	 * Represents the buffer that holds the entries, from <b>offset</b> on.
+	 */
+	private final ByteBuffer entries;
+
+	/**
+	 * Represents the position of the first entry within <b>entries</b>.
+	 */
+	private final int offset;
+
+	/**
+	 * Represents the value of every digit of an index, i.e. the powers of
+	 * the number of Points of the Tray.
+	 */
+	private final int[] digitValues;
+
+	/**
+	 * Represents the index, within the Trays of the puzzle, of the Block that
+	 * stands for every pattern Block (see <b>bind</b>).
+	 */
+	private int[] blockIndices;
+
+	private PatternDatabase(int rowSize, int colSize, int[] shapes,
+			List<Block> goals, long layout, ByteBuffer entries, int offset) {
+		this.rowSize = rowSize;
+		this.colSize = colSize;
+		this.shapes = shapes;
+		this.goals = goals;
+		this.layout = layout;
+		this.entries = entries;
+		this.offset = offset;
+		this.digitValues = new int[shapes.length];
+		int value = 1;
+		for (int k = 0; k < shapes.length; k++) {
+			digitValues[k] = value;
+			value *= rowSize * colSize;
+		}
+	}
+
+	/**
+	 * Picks, for every pattern Block, a Block of the same shape from the given
+	 * Tray, different from the others picked. Since the Block at an index of a
+	 * Tray never changes its shape, the same Blocks stand for the pattern in
+	 * every Tray reachable from it.
+	 * 
+	 * @param tray
+	 *            - a Tray of the layout of this PatternDatabase
+	 * @throws IllegalArgumentException
+	 *             when the Tray does not have enough Blocks of a pattern
+	 *             shape
+	 */
+	private void bind(Tray tray) {
+		blockIndices = new int[shapes.length];
+		boolean[] taken = new boolean[tray.numBlocks];
+		for (int k = 0; k < shapes.length; k++) {
+			blockIndices[k] = -1;
+			for (int i = 0; i < tray.numBlocks && blockIndices[k] < 0; i++) {
+				if (!taken[i] && tray.getBlock(i).shapeId() == shapes[k]) {
+					taken[i] = true;
+					blockIndices[k] = i;
+				}
+			}
+			if (blockIndices[k] < 0) {
+				throw new IllegalArgumentException(
+						"the Tray lacks a Block of a pattern shape");
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of pattern Blocks.
+	 * 
+	 * @return the number of pattern Blocks
+	 */
+	public int numPatternBlocks() {
+		return shapes.length;
+	}
+
+	/**
+	 * Returns the number of entries, i.e. of placements of the pattern Blocks.
+	 * 
+	 * @return the number of entries
+	 */
+	public int numEntries() {
+		return (int) numEntries(rowSize * colSize, shapes.length);
+	}
+
+	/**
+	 * Returns the number of moves that the pattern Blocks need to meet the
+	 * goal from their placement in the given configuration, with every other
+	 * Block taken off.
+	 * 
+	 * @param config
+	 *            - a Tray configuration reachable from the Tray that this
+	 *            PatternDatabase was built or loaded for
+	 * @return the number of moves, at most 254, or 255 if the goal cannot be
+	 *         met
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public int distance(Tray config) {
+		int index = 0;
+		for (int k = 0; k < shapes.length; k++) {
+			Point ul = config.getBlock(blockIndices[k]).getUpperLeft();
+			index += (ul.rowIdx * colSize + ul.colIdx) * digitValues[k];
+		}
+		return entries.get(offset + index) & 0xFF;
+	}
+
+	/**
+	 * Saves this PatternDatabase in the given directory, under the name given
+	 * by <b>fileNameOf</b>. The file is written next to its final name first
+	 * and then moved there, so a file of that name is never half-written.
+	 * 
+	 * @param directory
+	 *            - the directory of pattern databases; it is created if it
+	 *            does not exist
+	 * @return the file that this PatternDatabase has been saved in
+	 * @throws IOException
+	 *             when the file cannot be written
+	 */
+	public Path save(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		Path path = directory.resolve(String.format("%016x.pdb", layout));
+		Path temp = Files.createTempFile(directory, "pdb", ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeLong(layout);
+			out.writeInt(rowSize);
+			out.writeInt(colSize);
+			out.writeInt(shapes.length);
+			for (int shape : shapes) {
+				out.writeInt(shape);
+			}
+			out.writeInt(goals.size());
+			for (Block b : goals) {
+				out.writeInt(b.getUpperLeft().rowIdx);
+				out.writeInt(b.getUpperLeft().colIdx);
+				out.writeInt(b.shapeId());
+			}
+			ByteBuffer data = entries.duplicate();
+			data.position(offset).limit(offset + numEntries());
+			byte[] chunk = new byte[1 << 16];
+			while (data.hasRemaining()) {
+				int length = Math.min(chunk.length, data.remaining());
+				data.get(chunk, 0, length);
+				out.write(chunk, 0, length);
+			}
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		return path;
+	}
+
+	/**
+	 * Fills in every entry by a breadth-first search, level by level, from
+	 * every placement that meets the goal.
+	 */
+	private void fill() {
+		int numEntries = numEntries();
+		for (int index = 0; index < numEntries; index++) {
+			entries.put(offset + index, (byte) UNREACHABLE);
+		}
+
+		int[] positions = new int[shapes.length];
+		int[] occupied = new int[rowSize * colSize];
+		int stamp = 0;
+
+		int[] level = new int[1024];
+		int levelSize = 0;
+		for (int index = 0; index < numEntries; index++) {
+			if (decode(index, positions, occupied, ++stamp) && meetsGoal(positions)) {
+				entries.put(offset + index, (byte) 0);
+				if (levelSize == level.length) {
+					level = Arrays.copyOf(level, levelSize << 1);
+				}
+				level[levelSize++] = index;
+			}
+		}
+
+		int[] next = new int[1024];
+		for (int distance = 1; levelSize > 0; distance++) {
+			int nextSize = 0;
+			for (int j = 0; j < levelSize; j++) {
+				int index = level[j];
+				decode(index, positions, occupied, ++stamp);
+				for (int k = 0; k < shapes.length; k++) {
+					for (Direction d : Direction.all) {
+						int step = step(positions[k], k, d, occupied, stamp);
+						if (step == 0) {
+							continue;
+						}
+						int child = index + step * digitValues[k];
+						if ((entries.get(offset + child) & 0xFF) != UNREACHABLE) {
+							continue;
+						}
+						entries.put(offset + child,
+								(byte) Math.min(distance, MAX_DISTANCE));
+						if (nextSize == next.length) {
+							next = Arrays.copyOf(next, nextSize << 1);
+						}
+						next[nextSize++] = child;
+					}
+				}
+			}
+			int[] tmp = level;
+			level = next;
+			next = tmp;
+			levelSize = nextSize;
+		}
+	}
+
+	/**
+	 * Decodes the given index into the positions of the pattern Blocks, and
+	 * marks the Points they cover with the given stamp.
+	 * 
+	 * @param index
+	 *            - the index of a placement
+	 * @param positions
+	 *            - the array to store the positions in
+	 * @param occupied
+	 *            - the stamp of every Point of the Tray
+	 * @param stamp
+	 *            - the stamp to mark the covered Points with; it must differ
+	 *            from every stamp used before
+	 * @return whether every pattern Block lies within the Tray, and no two of
+	 *         them overlap
+	 */
+	private boolean decode(int index, int[] positions, int[] occupied,
+			int stamp) {
+		int numPoints = rowSize * colSize;
+		boolean valid = true;
+		for (int k = 0; k < shapes.length; k++) {
+			positions[k] = index % numPoints;
+			index /= numPoints;
+			int top = positions[k] / colSize;
+			int left = positions[k] % colSize;
+			int height = (shapes[k] >>> 16) + 1;
+			int width = (shapes[k] & 0xFFFF) + 1;
+			if (top + height > rowSize || left + width > colSize) {
+				valid = false;
+				continue;
+			}
+			for (int r = top; r < top + height; r++) {
+				for (int c = left; c < left + width; c++) {
+					if (occupied[r * colSize + c] == stamp) {
+						valid = false;
+					}
+					occupied[r * colSize + c] = stamp;
+				}
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * Checks whether the pattern Blocks at the given positions meet every
+	 * goal.
+	 * 
+	 * @param positions
+	 *            - the positions of the pattern Blocks
+	 * @return whether every goal Block is one of the pattern Blocks
+	 */
+	private boolean meetsGoal(int[] positions) {
+		for (Block g : goals) {
+			int position = g.getUpperLeft().rowIdx * colSize
+					+ g.getUpperLeft().colIdx;
+			boolean met = false;
+			for (int k = 0; k < shapes.length && !met; k++) {
+				met = positions[k] == position && shapes[k] == g.shapeId();
+			}
+			if (!met) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the change of position of the k-th pattern Block if it is moved
+	 * in the given direction, or 0 if it cannot be: when its leading edge
+	 * would leave the Tray or cover a Point marked with the given stamp.
+	 * 
+	 * @param position
+	 *            - the position of the Block
+	 * @param k
+	 *            - the index of the Block within the pattern
+	 * @param d
+	 *            - the Direction to move in
+	 * @param occupied
+	 *            - the stamp of every Point of the Tray
+	 * @param stamp
+	 *            - the stamp of the covered Points
+	 * @return the change of position, or 0 if the Block cannot be moved
+	 */
+	private int step(int position, int k, Direction d, int[] occupied,
+			int stamp) {
+		int top = position / colSize;
+		int left = position % colSize;
+		int height = (shapes[k] >>> 16) + 1;
+		int width = (shapes[k] & 0xFFFF) + 1;
+		int row, col, dRow, dCol, length;
+		switch (d) {
+		case UP:
+			row = top - 1;
+			col = left;
+			dRow = 0;
+			dCol = 1;
+			length = width;
+			break;
+		case DOWN:
+			row = top + height;
+			col = left;
+			dRow = 0;
+			dCol = 1;
+			length = width;
+			break;
+		case LEFT:
+			row = top;
+			col = left - 1;
+			dRow = 1;
+			dCol = 0;
+			length = height;
+			break;
+		default:
+			row = top;
+			col = left + width;
+			dRow = 1;
+			dCol = 0;
+			length = height;
+		}
+		if (row < 0 || col < 0 || row + dRow * (length - 1) >= rowSize
+				|| col + dCol * (length - 1) >= colSize) {
+			return 0;
+		}
+		for (int i = 0; i < length; i++) {
+			if (occupied[(row + dRow * i) * colSize + col + dCol * i] == stamp) {
+				return 0;
+			}
+		}
+		switch (d) {
+		case UP:
+			return -colSize;
+		case DOWN:
+			return colSize;
+		case LEFT:
+			return -1;
+		default:
+			return 1;
+		}
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
@@ -0,0 +1,101 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * This class is the tool that builds the PatternDatabase of a puzzle layout
+ * and saves it where <b>Solver.main</b> looks for it (flag G), so that
+ * informed search on every puzzle of that layout can use it. A layout is
+ * built once, e.g. for each of the classic puzzles that are solved over and
+ * over, and serves every initial configuration with the same Tray
+ * dimensions, Block shapes and goal.
+ */
+public class PatternDatabaseBuilder {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The number of entries of a PatternDatabase if none is given: 16M, i.e.
+	 * five pattern Blocks on a 4X5 Tray.
+	 */
+	public static final long DEFAULT_MAX_ENTRIES = 1L << 24;
+
+	/**
+	 * The main method of the tool. It prints the pattern size, the number of
+	 * entries, the time taken, and the file that the PatternDatabase has been
+	 * saved in.
+	 * 
+	 * @param args
+	 *            - the command-line arguments:
+	 *            <p>
+	 *            <ul>
+	 *            <li>First argument: the name of the file that specifies an
+	 *            initial tray configuration of the layout</li>
+	 *            <li>Second argument: the name of the file that specifies the
+	 *            desired goal configuration of the layout</li>
+	 *            <li>Third argument (optional): the largest number of entries,
+	 *            i.e. bytes, of the PatternDatabase; by default,
+	 *            <b>DEFAULT_MAX_ENTRIES</b></li>
+	 *            </ul>
+	 *            </p>
+	 *            <p>
+	 *            The PatternDatabase is saved in the directory named by the
+	 *            system property "solver.pdb.dir" (see
+	 *            <b>Solver.patternDatabaseDirectory</b>).
+	 *            </p>
+	 */
+	public static void main(String[] args) {
+		long start = System.nanoTime();
+		if (args.length < 2 || args.length > 3) {
+			System.out
+					.println("Usage: PatternDatabaseBuilder init goal [maxEntries]. Refer to the Javadoc on PatternDatabaseBuilder.main for details.");
+			System.exit(1);
+		}
+		long maxEntries = DEFAULT_MAX_ENTRIES;
+		if (args.length == 3) {
+			try {
+				maxEntries = Long.parseLong(args[2]);
+			} catch (NumberFormatException nfe) {
+				System.out.println("The number of entries must be an integer.");
+				System.exit(1);
+			}
+		}
+
+		Tray initialTray = null;
+		List<Block> desiredBlocks = null;
+		try {
+			PuzzleParser input = new PuzzleParser(
+					PuzzleParser.readFile(args[0]));
+			short rowSize = input.nextShort();
+			short colSize = input.nextShort();
+			input.skipLine();
+			Point.initPool(rowSize + 1, colSize + 1);
+			initialTray = new Tray(rowSize, colSize, input.remainingBlocks());
+			desiredBlocks = new PuzzleParser(PuzzleParser.readFile(args[1]))
+					.remainingBlocks();
+		} catch (IOException ioe) {
+			System.out.println("Could not open file!");
+			System.exit(1);
+		}
+
+		try {
+			PatternDatabase pdb = PatternDatabase.build(initialTray,
+					desiredBlocks, maxEntries);
+			Path path = pdb.save(Solver.patternDatabaseDirectory());
+			System.out.println("Pattern of " + pdb.numPatternBlocks()
+					+ " Blocks, " + pdb.numEntries() + " entries, built in "
+					+ (System.nanoTime() - start) / 1000000000.0 + " seconds");
+			System.out.println("Saved to " + path);
+		} catch (IllegalArgumentException iae) {
+			System.out.println("Could not build a pattern database: "
+					+ iae.getMessage());
+			System.exit(1);
+		} catch (IOException ioe) {
+			System.out.println("Could not save the pattern database: "
+					+ ioe.getMessage());
+			System.exit(1);
+		}
+	}
+
+	// ///////////////////// static members end ///////////////////////
+}
@@ -0,0 +1,67 @@
+/**
+ * <p>
+ * A PatternDatabaseHeuristic estimates the number of remaining moves by
+ * looking up the placement of a pattern of Blocks in a PatternDatabase. Since
+ * the pattern leaves some of the goal Blocks and obstacles out, the estimate
+ * is the larger of that number and the estimate of another Heuristic, e.g. a
+ * ManhattanHeuristic; the larger of two admissible estimates is admissible.
+ * </p>
+ * 
+ * <p>
+ * A placement from which the pattern cannot meet the goal at all is
+ * estimated at 255 moves, so the search puts it off rather than dropping it.
+ * </p>
+ */
+public class PatternDatabaseHeuristic implements Heuristic {
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the PatternDatabase to look placements up in.
+	 */
+	private final PatternDatabase patterns;
+
+	/**
+	 * Represents the Heuristic whose estimate is taken when it is larger.
+	 */
+	private final Heuristic fallback;
+
+	/**
+	 * Initializes a PatternDatabaseHeuristic that looks placements up in the
+	 * given PatternDatabase, and takes the estimate of the given Heuristic
+	 * when it is larger.
+	 * 
+	 * @param patterns
+	 *            - the PatternDatabase of the puzzle, built or loaded for its
+	 *            initial Tray
+	 * @param fallback
+	 *            - another admissible Heuristic for the puzzle
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public PatternDatabaseHeuristic(PatternDatabase patterns,
+			Heuristic fallback) {
+		if (patterns == null || fallback == null) {
+			throw new NullPointerException();
+		}
+		this.patterns = patterns;
+		this.fallback = fallback;
+	}
+
+	/**
+	 * Returns a lower bound on the number of single-step moves needed to get
+	 * from the given configuration to one that contains every desired Block.
+	 * 
+	 * @param config
+	 *            - the Tray configuration to estimate
+	 * @return a non-negative lower bound on the number of remaining moves
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	@Override
+	public int estimate(Tray config) {
+		return Math.max(patterns.distance(config), fallback.estimate(config));
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
@@ -64,6 +64,12 @@ public class Point {
 	 */
 	private static Point[][] pool = null;
 
+	/**
+	 * Represents the row/column index bounds within which every Point of the
+	 * pool has been created by <b>preparePool</b>.
+	 */
+	private static int preparedRows = 0, preparedCols = 0;
+
 	/**
 	 * Initializes the <i>static pool</i> of Point instances of this
 	 * application, with the given row/column index bounds. If a pool has
@@ -101,6 +107,50 @@ public class Point {
 		}
 	}
 
+	/**
+	 * Makes sure that the <i>static Point pool</i> covers the given
+	 * row/column index bounds, growing it with <b>initPool</b> if it does not
+	 * already, and then creates every Point of the pool up front. Only the
+	 * Points outside the bounds prepared by earlier calls are created, so a
+	 * call that does not grow the pool returns at once. Afterwards
+	 * <b>getInstance</b> only ever reads the pool, so Points can be obtained
+	 * from several threads at once. Calls to this method are serialized, and
+	 * growing the pool copies every existing Point into the new pool, so a
+	 * thread may go on obtaining Points within the bounds it has prepared
+	 * while another thread grows the pool.
+	 * 
+	 * @param maxRow
+	 *            - the maximum possible row index within the pool
+	 * @param maxCol
+	 *            - the maximum possible column index within the pool
+	 * @throws IndexOutOfBoundsException
+	 *             when either argument is negative
+	 */
+	public static synchronized void preparePool(int maxRow, int maxCol) {
+		if (maxRow < 0 || maxCol < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (maxRow <= preparedRows && maxCol <= preparedCols) {
+			return;
+		}
+		if (pool == null) {
+			initPool(maxRow, maxCol);
+		} else if (maxRow > pool.length || maxCol > pool[0].length) {
+			initPool(Math.max(maxRow, pool.length),
+					Math.max(maxCol, pool[0].length));
+		}
+		for (int i = 0; i < pool.length; i++) {
+			// the first preparedCols Points of the first preparedRows rows
+			// have been created already
+			int first = i < preparedRows ? preparedCols : 0;
+			for (int j = first; j < pool[i].length; j++) {
+				getInstance(i, j);
+			}
+		}
+		preparedRows = pool.length;
+		preparedCols = pool[0].length;
+	}
+
 	/**
 	 * <p>
 	 * Returns a Point instance with the given indices from the <i>static Point
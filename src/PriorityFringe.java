@@ -0,0 +1,140 @@
+import java.util.*;
+
+/**
+ * <p>
+ * This class implements a SolveFringe in the form of a priority queue. It is
+ * used to perform goal-directed (A*) solution search on a given puzzle: the
+ * element taken next is always the one with the smallest sum of its depth and
+ * its Heuristic estimate.
+ * </p>
+ * 
+ * <p>
+ * Among elements of equal priority, the one with the smaller estimate (that
+ * is, the deeper one) is taken first, and among those, the one that was put
+ * first. This keeps the search moving towards the goal instead of widening
+ * every level of the search tree.
+ * </p>
+ */
+public class PriorityFringe implements SolveFringe {
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the Heuristic that scores every element put on this fringe.
+	 */
+	private final Heuristic heuristic;
+
+	/**
+	 * Represents the elements on this fringe, along with their priorities.
+	 */
+	private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+
+	/**
+	 * Represents the number of elements that have been put on this fringe so
+	 * far. Used to break ties in the order of insertion.
+	 */
+	private long numPut = 0;
+
+	/**
+	 * Initializes an empty fringe ordered by the given Heuristic.
+	 * 
+	 * @param heuristic
+	 *            - the Heuristic that scores the elements of this fringe
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public PriorityFringe(Heuristic heuristic) {
+		if (heuristic == null) {
+			throw new NullPointerException();
+		}
+		this.heuristic = heuristic;
+	}
+
+	/**
+	 * Adds the given element to the fringe. The element's Tray is scored by
+	 * this fringe's Heuristic right away.
+	 * 
+	 * @param e
+	 *            - the element to add
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	@Override
+	public void put(SolveFringeElement e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		queue.add(new Entry(e, heuristic.estimate(e.tray), numPut++));
+	}
+
+	/**
+	 * Returns and removes the element with the highest priority.
+	 * 
+	 * @throws NoSuchElementException
+	 *             when this fringe is empty
+	 */
+	@Override
+	public SolveFringeElement take() {
+		Entry head = queue.poll();
+		if (head == null) {
+			throw new NoSuchElementException();
+		}
+		return head.element;
+	}
+
+	/**
+	 * Checks whether this fringe is empty.
+	 * 
+	 * @return whether this fringe is empty
+	 */
+	@Override
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+
+	/**
+	 * An element of this fringe together with its priority.
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		/**
+		 * Represents the element on the fringe.
+		 */
+		final SolveFringeElement element;
+
+		/**
+		 * Represents the Heuristic estimate of the element's Tray.
+		 */
+		final int estimate;
+
+		/**
+		 * Represents the depth plus the estimate of the element.
+		 */
+		final int priority;
+
+		/**
+		 * Represents the order in which the element was put on the fringe.
+		 */
+		final long order;
+
+		Entry(SolveFringeElement element, int estimate, long order) {
+			this.element = element;
+			this.estimate = estimate;
+			this.priority = element.depth + estimate;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			if (priority != o.priority) {
+				return priority < o.priority ? -1 : 1;
+			}
+			if (estimate != o.estimate) {
+				return estimate < o.estimate ? -1 : 1;
+			}
+			return order < o.order ? -1 : (order == o.order ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,250 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * <p>
+ * A PuzzleParser reads the lines of an initial or goal configuration file
+ * straight from its bytes. The whole file is read through a FileChannel in one
+ * go (see <b>readFile</b>), and every index is parsed digit by digit into a
+ * <b>short</b>, so neither a String nor a Scanner is created for a line.
+ * </p>
+ * 
+ * <p>
+ * Lines are separated as by <b>BufferedReader.readLine()</b>: by a line feed,
+ * a carriage return, or a carriage return followed by a line feed. The
+ * numbers of a line are separated by whitespace, and every Block line is
+ * validated as strictly as <b>Scanner.nextShort()</b> would: it must consist
+ * of exactly four integers, each within the range of the type <b>short</b>.
+ * </p>
+ */
+public class PuzzleParser {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * Reads the whole content of the file with the given name.
+	 * 
+	 * @param fileName
+	 *            - the name of the file to read
+	 * @return the bytes of the file
+	 * @throws IOException
+	 *             when the file cannot be opened or read, or is bigger than
+	 *             2GB
+	 */
+	public static byte[] readFile(String fileName) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IOException(fileName + " is too big");
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// keep reading until the buffer is full or the file ends
+			}
+			if (buffer.hasRemaining()) { // the file has shrunk meanwhile
+				return Arrays.copyOf(buffer.array(), buffer.position());
+			}
+			return buffer.array();
+		}
+	}
+
+	/**
+	 * Checks whether the given byte separates the numbers of a line, as
+	 * <b>Character.isWhitespace</b> would, line separators excluded.
+	 * 
+	 * @param b
+	 *            - the byte to check
+	 * @return whether b is whitespace other than a line separator
+	 */
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == 0x0B || b == '\f'
+				|| (b >= 0x1C && b <= 0x1F);
+	}
+
+	/**
+	 * Checks whether the given byte ends a line.
+	 * 
+	 * @param b
+	 *            - the byte to check
+	 * @return whether b is a line feed or a carriage return
+	 */
+	private static boolean isLineSeparator(byte b) {
+		return b == '\n' || b == '\r';
+	}
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the bytes being parsed.
+	 */
+	private final byte[] data;
+
+	/**
+	 * Represents the index of the next byte to parse.
+	 */
+	private int pos = 0;
+
+	/**
+	 * Initializes a PuzzleParser that parses the given bytes from the start.
+	 * 
+	 * @param data
+	 *            - the content of a configuration file
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public PuzzleParser(byte[] data) {
+		if (data == null) {
+			throw new NullPointerException();
+		}
+		this.data = data;
+	}
+
+	/**
+	 * Checks whether there is another line to parse. As with
+	 * <b>BufferedReader.readLine()</b>, a line separator at the very end of
+	 * the data does not start another line.
+	 * 
+	 * @return whether there is another line to parse
+	 */
+	public boolean hasNextLine() {
+		return pos < data.length;
+	}
+
+	/**
+	 * Parses the next number of the current line.
+	 * 
+	 * @return the number parsed
+	 * @throws IllegalArgumentException
+	 *             when the current line has no more numbers, or when the next
+	 *             one is not an integer or is outside the range defined by
+	 *             the type <b>short</b>
+	 */
+	public short nextShort() {
+		while (pos < data.length && isSpace(data[pos])) {
+			pos++;
+		}
+		if (pos == data.length || isLineSeparator(data[pos])) {
+			throw new IllegalArgumentException("too few arguments in the input");
+		}
+
+		boolean negative = false;
+		if (data[pos] == '-' || data[pos] == '+') {
+			negative = (data[pos] == '-');
+			pos++;
+		}
+		int value = 0;
+		int numDigits = 0;
+		while (pos < data.length && !isSpace(data[pos])
+				&& !isLineSeparator(data[pos])) {
+			int digit = data[pos++] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new IllegalArgumentException(
+						"non-integer argument or value too big");
+			}
+			value = value * 10 + digit;
+			numDigits++;
+			if (value > Short.MAX_VALUE + 1) {
+				throw new IllegalArgumentException(
+						"non-integer argument or value too big");
+			}
+		}
+		if (numDigits == 0 || (!negative && value > Short.MAX_VALUE)) {
+			throw new IllegalArgumentException(
+					"non-integer argument or value too big");
+		}
+		return (short) (negative ? -value : value);
+	}
+
+	/**
+	 * Skips whatever is left of the current line, and moves on to the next.
+	 */
+	public void skipLine() {
+		while (pos < data.length && !isLineSeparator(data[pos])) {
+			pos++;
+		}
+		skipLineSeparator();
+	}
+
+	/**
+	 * Moves on to the next line, making sure that nothing but whitespace is
+	 * left on the current one.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             when there are more numbers on the current line
+	 */
+	public void endLine() {
+		while (pos < data.length && isSpace(data[pos])) {
+			pos++;
+		}
+		if (pos < data.length && !isLineSeparator(data[pos])) {
+			throw new IllegalArgumentException(
+					"too many arguments in the input");
+		}
+		skipLineSeparator();
+	}
+
+	/**
+	 * Parses the next line, which must be in the format
+	 * "ULrow ULcol LRrow LRcol", and returns the corresponding Block.
+	 * 
+	 * @return the Block whose toString() would return the exact same format as
+	 *         the line (not counting whitespace)
+	 * @throws IllegalArgumentException
+	 *             when there are more or less than four arguments in the line,
+	 *             or when the line contains a non-integer value, or when the
+	 *             line contains an integer value that is outside the range
+	 *             defined by the type <b>short</b>, or when the Point defined
+	 *             by LRrow and LRcol is not on the lower right side of the
+	 *             Point defined by ULrow and ULcol ("lower right side" includes
+	 *             same row and same column)
+	 * @throws IndexOutOfBoundsException
+	 *             when any of the line's integers is negative
+	 */
+	public Block nextBlock() {
+		short row1 = nextShort();
+		short col1 = nextShort();
+		short row2 = nextShort();
+		short col2 = nextShort();
+		endLine();
+		return Block.getInstance(row1, col1, row2, col2);
+	}
+
+	/**
+	 * Parses every remaining line as a Block (see <b>nextBlock</b>).
+	 * 
+	 * @return the Blocks of the remaining lines, in order
+	 * @throws IllegalArgumentException
+	 *             when any of the lines is not a valid Block
+	 * @throws IndexOutOfBoundsException
+	 *             when any of the lines contains a negative integer
+	 */
+	public List<Block> remainingBlocks() {
+		List<Block> blocks = new ArrayList<Block>();
+		while (hasNextLine()) {
+			blocks.add(nextBlock());
+		}
+		return blocks;
+	}
+
+	/**
+	 * Moves past the line separator at the current position, if any.
+	 */
+	private void skipLineSeparator() {
+		if (pos < data.length && data[pos] == '\r') {
+			pos++;
+			if (pos < data.length && data[pos] == '\n') {
+				pos++;
+			}
+		} else if (pos < data.length && data[pos] == '\n') {
+			pos++;
+		}
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
@@ -0,0 +1,608 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * <p>
+ * A SolutionCache remembers the solutions of puzzles that have been solved
+ * before, in a file on disk, so that solving the same puzzle again takes no
+ * search at all. A puzzle is identified by its <i>fingerprint</i> (see
+ * <b>fingerprint</b>), a 64-bit hash of the Tray dimensions, the multiset of
+ * initial Blocks and the multiset of goal Blocks; the order in which the
+ * configuration files list their Blocks therefore does not matter. A solution
+ * found in the cache is only ever trusted after it has been replayed on the
+ * initial Tray (see <b>replay</b>), so neither a hash collision nor a damaged
+ * file can lead to a wrong move trace.
+ * </p>
+ * 
+ * <p>
+ * Puzzles that are rotated or mirrored versions of each other share a single
+ * solution: a puzzle is looked up, and its solution stored, in its
+ * <i>canonical</i> orientation, the one among its eight images under the
+ * Symmetries of the Tray whose fingerprint is the smallest (see
+ * <b>canonicalSymmetry</b>). <b>replay</b> maps the moves between
+ * orientations.
+ * </p>
+ * 
+ * <p>
+ * The file starts with a magic number and is otherwise append-only: it holds
+ * a record per solution, in the order the solutions were stored, made up of
+ * the fingerprint, the time the record was last used (a counter, not a
+ * clock), the number of moves, and the moves themselves, packed as by
+ * <b>MoveTraceWriter.packMove</b>. The whole file is memory-mapped, and an
+ * index from fingerprint to record is built in memory when the cache is
+ * opened. When the file grows beyond the given size, it is rewritten with
+ * only the most recently used records, which take up at most three quarters
+ * of that size, so that the least recently used solutions are evicted.
+ * </p>
+ * 
+ * <p>
+ * Only one process may use a cache file at a time; a second one fails to
+ * open it. Within a process, a SolutionCache is thread-safe.
+ * </p>
+ */
+public class SolutionCache implements Closeable {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The magic number at the start of a cache file ("TSC1").
+	 */
+	private static final int MAGIC = 0x54534331;
+
+	/**
+	 * The number of bytes of the file before the first record.
+	 */
+	private static final int HEADER_SIZE = 8;
+
+	/**
+	 * The number of bytes of a record before its moves: the fingerprint, the
+	 * time of last use and the number of moves.
+	 */
+	private static final int RECORD_HEADER_SIZE = 20;
+
+	/**
+	 * Returns the fingerprint of the image under the given Symmetry of the
+	 * puzzle of getting from the given Tray to a configuration that contains
+	 * the given Blocks. Two puzzles have the same fingerprint if their Trays
+	 * have the same dimensions and the same Blocks, and their goals the same
+	 * Blocks, whatever the order of the Blocks.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @param s
+	 *            - the Symmetry to apply to the puzzle first
+	 * @return the fingerprint of the image of the puzzle
+	 * @throws IndexOutOfBoundsException
+	 *             when s transposes the Tray and the Point pool does not cover
+	 *             the transposed Tray
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public static long fingerprint(Tray initialTray,
+			Collection<Block> desiredBlocks, Symmetry s) {
+		int rowSize = initialTray.rowSize;
+		int colSize = initialTray.colSize;
+		long[] initial = new long[initialTray.numBlocks];
+		for (int i = 0; i < initial.length; i++) {
+			initial[i] = pack(s.apply(initialTray.getBlock(i), rowSize,
+					colSize));
+		}
+		long[] desired = new long[desiredBlocks.size()];
+		int i = 0;
+		for (Block b : desiredBlocks) {
+			desired[i++] = pack(s.apply(b, rowSize, colSize));
+		}
+		Arrays.sort(initial);
+		Arrays.sort(desired);
+
+		long h = mix(((long) s.rowSize(rowSize, colSize) << 16)
+				| s.colSize(rowSize, colSize));
+		h = mix(h ^ initial.length);
+		for (long b : initial) {
+			h = mix(h ^ b);
+		}
+		h = mix(h ^ desired.length);
+		for (long b : desired) {
+			h = mix(h ^ b);
+		}
+		return h;
+	}
+
+	/**
+	 * Returns the Symmetry that takes the puzzle of getting from the given Tray
+	 * to a configuration that contains the given Blocks to its canonical
+	 * orientation, i.e. to its image with the smallest fingerprint. Every
+	 * rotated or mirrored version of a puzzle has the same canonical
+	 * orientation.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @return the Symmetry to apply to the puzzle to get its canonical
+	 *         orientation
+	 * @throws IndexOutOfBoundsException
+	 *             when the Tray is not square and the Point pool does not
+	 *             cover the transposed Tray
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public static Symmetry canonicalSymmetry(Tray initialTray,
+			Collection<Block> desiredBlocks) {
+		Symmetry canonical = Symmetry.IDENTITY;
+		long smallest = fingerprint(initialTray, desiredBlocks, canonical);
+		for (Symmetry s : Symmetry.all) {
+			long h = fingerprint(initialTray, desiredBlocks, s);
+			if (h < smallest) {
+				smallest = h;
+				canonical = s;
+			}
+		}
+		return canonical;
+	}
+
+	/**
+	 * Packs the corners of the given Block into a <b>long</b>, one 16-bit field
+	 * per index.
+	 * 
+	 * @param b
+	 *            - the Block to pack
+	 * @return the packed Block
+	 */
+	private static long pack(Block b) {
+		Point ul = b.getUpperLeft();
+		Point lr = b.getLowerRight();
+		return ((long) ul.rowIdx << 48) | ((long) ul.colIdx << 32)
+				| ((long) lr.rowIdx << 16) | lr.colIdx;
+	}
+
+	/**
+	 * Scrambles the bits of the given value (the finalizer of SplitMix64), so
+	 * that every bit of the input affects every bit of the output.
+	 * 
+	 * @param z
+	 *            - the value to scramble
+	 * @return the scrambled value
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Checks whether the given moves solve the image under <b>given</b> of the
+	 * puzzle of getting from the given Tray to a configuration that contains
+	 * the given Blocks, and returns the same moves in the orientation of the
+	 * image under <b>wanted</b>. The moves are made one after another on a
+	 * clone of the Tray, each taken back through the inverse of <b>given</b>.
+	 * Every move must take the Block whose upper left corner is at its first
+	 * Point by one Point to its second Point.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration; it is left unchanged
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @param moves
+	 *            - the moves, packed as by <b>MoveTraceWriter.packMove</b>
+	 * @param given
+	 *            - the Symmetry whose image of the puzzle the moves are made
+	 *            in
+	 * @param wanted
+	 *            - the Symmetry whose image of the puzzle the moves are to be
+	 *            returned in
+	 * @return the moves in the orientation of <b>wanted</b>, or <b>null</b>
+	 *         if any move is illegal or the last one does not lead to the
+	 *         goal
+	 * @throws IndexOutOfBoundsException
+	 *             when either Symmetry transposes the Tray and the Point pool
+	 *             does not cover the transposed Tray
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public static long[] replay(Tray initialTray,
+			Collection<Block> desiredBlocks, long[] moves, Symmetry given,
+			Symmetry wanted) {
+		int rowSize = initialTray.rowSize;
+		int colSize = initialTray.colSize;
+		int givenRows = given.rowSize(rowSize, colSize);
+		int givenCols = given.colSize(rowSize, colSize);
+		Symmetry back = given.inverse();
+
+		Tray config = initialTray.clone();
+		long[] replayed = new long[moves.length];
+		for (int i = 0; i < moves.length; i++) {
+			long move = moves[i];
+			int fromRow = (int) (move >>> 48) & 0xFFFF;
+			int fromCol = (int) (move >>> 32) & 0xFFFF;
+			int toRow = (int) (move >>> 16) & 0xFFFF;
+			int toCol = (int) move & 0xFFFF;
+			if (fromRow >= givenRows || fromCol >= givenCols
+					|| toRow >= givenRows || toCol >= givenCols
+					|| Math.abs(toRow - fromRow) + Math.abs(toCol - fromCol) != 1) {
+				return null;
+			}
+			Point from = Point.getInstance(fromRow, fromCol);
+			int blockIdx = config.findBlockContaining(back.apply(from,
+					givenRows, givenCols));
+			if (blockIdx < 0) {
+				return null;
+			}
+			Block b = config.getBlock(blockIdx);
+			if (!given.apply(b, rowSize, colSize).getUpperLeft().equals(from)) {
+				return null;
+			}
+			Direction d;
+			if (toRow == fromRow) {
+				d = (toCol > fromCol) ? Direction.RIGHT : Direction.LEFT;
+			} else {
+				d = (toRow > fromRow) ? Direction.DOWN : Direction.UP;
+			}
+			d = back.apply(d);
+			if (!config.canMove(blockIdx, d)) {
+				return null;
+			}
+			config.moveBlock(blockIdx, d);
+			replayed[i] = MoveTraceWriter.packMove(
+					wanted.apply(b, rowSize, colSize).getUpperLeft(),
+					wanted.apply(config.getBlock(blockIdx), rowSize, colSize)
+							.getUpperLeft());
+		}
+		if (!Solver.isDesiredConfiguration(config, desiredBlocks)) {
+			return null;
+		}
+		return replayed;
+	}
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the cache file.
+	 */
+	private final Path path;
+
+	/**
+	 * Represents the size that the cache file is kept under.
+	 */
+	private final long maxBytes;
+
+	/**
+	 * Represents the lock that keeps other processes off the cache file. It is
+	 * held on a file of its own, so that the cache file can be replaced while
+	 * it is held.
+	 */
+	private final FileLock lock;
+
+	/**
+	 * Represents the open cache file.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Represents the whole cache file, mapped into memory.
+	 */
+	private MappedByteBuffer map;
+
+	/**
+	 * Represents the index of the cache file: the offset of the record of
+	 * every fingerprint, in order of last use, least recent first.
+	 */
+	private final LinkedHashMap<Long, Integer> index = new LinkedHashMap<Long, Integer>(
+			16, 0.75f, true);
+
+	/**
+	 * Represents the time of the next use of a record.
+	 */
+	private long clock = 0;
+
+	/**
+	 * Opens the cache in the given file, creating the file if it does not
+	 * exist yet. A record that has been cut short, e.g. because a previous
+	 * process was killed while appending it, is dropped.
+	 * 
+	 * @param path
+	 *            - the cache file
+	 * @param maxBytes
+	 *            - the size to keep the cache file under; at most 2GB
+	 * @throws IOException
+	 *             when the file cannot be opened or mapped, when it is not a
+	 *             cache file, or when another process is using it
+	 * @throws IllegalArgumentException
+	 *             when maxBytes is not between the size of an empty cache file
+	 *             and 2GB
+	 * @throws NullPointerException
+	 *             when path is null
+	 */
+	public SolutionCache(Path path, long maxBytes) throws IOException {
+		if (maxBytes <= HEADER_SIZE || maxBytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("invalid cache size: "
+					+ maxBytes);
+		}
+		this.path = path;
+		this.maxBytes = maxBytes;
+
+		FileChannel lockChannel = FileChannel.open(
+				path.resolveSibling(path.getFileName() + ".lock"),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		FileLock l = null;
+		try {
+			l = lockChannel.tryLock();
+		} finally {
+			if (l == null) {
+				lockChannel.close();
+			}
+		}
+		if (l == null) {
+			throw new IOException(path + " is in use by another process");
+		}
+		lock = l;
+
+		try {
+			open();
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens and maps the cache file, and builds the index from its records.
+	 * 
+	 * @throws IOException
+	 *             when the file cannot be opened or mapped, or is not a cache
+	 *             file
+	 */
+	private void open() throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (channel.size() == 0) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(0).flip();
+			channel.write(header, 0);
+		}
+		if (channel.size() > Integer.MAX_VALUE) {
+			throw new IOException(path + " is too big");
+		}
+		remap();
+		if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+			throw new IOException(path + " is not a solution cache");
+		}
+
+		List<long[]> records = new ArrayList<long[]>();
+		int offset = HEADER_SIZE;
+		while (offset + RECORD_HEADER_SIZE <= map.limit()) {
+			int numMoves = map.getInt(offset + 16);
+			if (numMoves < 0
+					|| numMoves > (map.limit() - offset - RECORD_HEADER_SIZE) / 8) {
+				break;
+			}
+			records.add(new long[] { map.getLong(offset + 8),
+					map.getLong(offset), offset });
+			offset += RECORD_HEADER_SIZE + 8 * numMoves;
+		}
+		if (offset < map.limit()) {
+			channel.truncate(offset);
+			remap();
+		}
+
+		// of two records of the same fingerprint, the one used last (which
+		// is also the one stored last) replaces the other
+		Collections.sort(records, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] r1, long[] r2) {
+				return Long.compare(r1[0], r2[0]);
+			}
+		});
+		index.clear();
+		for (long[] r : records) {
+			index.remove(r[1]);
+			index.put(r[1], (int) r[2]);
+			clock = Math.max(clock, r[0] + 1);
+		}
+	}
+
+	/**
+	 * Maps the whole cache file into memory again, after it has changed size.
+	 * 
+	 * @throws IOException
+	 *             when the file cannot be mapped
+	 */
+	private void remap() throws IOException {
+		map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+	}
+
+	/**
+	 * Returns the number of solutions in the cache.
+	 * 
+	 * @return the number of solutions in the cache
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * Returns the moves stored for the puzzle with the given fingerprint, and
+	 * marks them as used. The moves are not checked; see <b>replay</b>.
+	 * 
+	 * @param fingerprint
+	 *            - the fingerprint of the puzzle
+	 * @return the moves, packed as by <b>MoveTraceWriter.packMove</b>, or
+	 *         <b>null</b> if no solution of the puzzle is stored
+	 * @throws IllegalStateException
+	 *             when the cache has been closed
+	 */
+	public synchronized long[] lookup(long fingerprint) {
+		if (channel == null) {
+			throw new IllegalStateException("the cache has been closed");
+		}
+		Integer offset = index.get(fingerprint);
+		if (offset == null) {
+			return null;
+		}
+		map.putLong(offset + 8, clock++);
+		long[] moves = new long[map.getInt(offset + 16)];
+		for (int i = 0; i < moves.length; i++) {
+			moves[i] = map.getLong(offset + RECORD_HEADER_SIZE + 8 * i);
+		}
+		return moves;
+	}
+
+	/**
+	 * Stores the given moves as the solution of the puzzle with the given
+	 * fingerprint, in place of any solution stored before. A solution too big
+	 * to ever fit in the cache is not stored.
+	 * 
+	 * @param fingerprint
+	 *            - the fingerprint of the puzzle
+	 * @param moves
+	 *            - the moves, packed as by <b>MoveTraceWriter.packMove</b>
+	 * @throws IOException
+	 *             when the cache file cannot be written or remapped
+	 * @throws IllegalStateException
+	 *             when the cache has been closed
+	 * @throws NullPointerException
+	 *             when moves is null
+	 */
+	public synchronized void store(long fingerprint, long[] moves)
+			throws IOException {
+		if (channel == null) {
+			throw new IllegalStateException("the cache has been closed");
+		}
+		long recordSize = RECORD_HEADER_SIZE + 8L * moves.length;
+		if (HEADER_SIZE + recordSize > maxBytes * 3 / 4) {
+			return;
+		}
+
+		ByteBuffer record = ByteBuffer.allocate((int) recordSize);
+		record.putLong(fingerprint).putLong(clock++).putInt(moves.length);
+		for (long move : moves) {
+			record.putLong(move);
+		}
+		record.flip();
+		int offset = (int) channel.size();
+		while (record.hasRemaining()) {
+			channel.write(record, offset + record.position());
+		}
+		remap();
+		index.remove(fingerprint);
+		index.put(fingerprint, offset);
+
+		if (channel.size() > maxBytes) {
+			compact();
+		}
+	}
+
+	/**
+	 * Rewrites the cache file with only the most recently used records that
+	 * take up at most three quarters of <b>maxBytes</b>. The new file is
+	 * written next to the old one and then moved over it, so the cache file
+	 * is never left half-written. The old file stays open and mapped until
+	 * the new one is, so when compaction fails the cache goes on as it was.
+	 * 
+	 * @throws IOException
+	 *             when the new file cannot be written, moved or mapped
+	 */
+	private void compact() throws IOException {
+		List<Map.Entry<Long, Integer>> entries = new ArrayList<Map.Entry<Long, Integer>>(
+				index.entrySet());
+		long budget = maxBytes * 3 / 4 - HEADER_SIZE;
+		int first = entries.size();
+		while (first > 0) {
+			int offset = entries.get(first - 1).getValue();
+			long size = RECORD_HEADER_SIZE + 8L * map.getInt(offset + 16);
+			if (size > budget) {
+				break;
+			}
+			budget -= size;
+			first--;
+		}
+
+		Path temp = Files.createTempFile(path.toAbsolutePath().getParent(),
+				path.getFileName().toString(), ".tmp");
+		Map<Long, Integer> kept = new LinkedHashMap<Long, Integer>();
+		try (FileChannel out = FileChannel.open(temp,
+				StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(0).flip();
+			out.write(header);
+			int newOffset = HEADER_SIZE;
+			for (Map.Entry<Long, Integer> e : entries.subList(first,
+					entries.size())) {
+				int offset = e.getValue();
+				int size = RECORD_HEADER_SIZE + 8 * map.getInt(offset + 16);
+				ByteBuffer record = map.duplicate();
+				record.position(offset).limit(offset + size);
+				while (record.hasRemaining()) {
+					out.write(record);
+				}
+				kept.put(e.getKey(), newOffset);
+				newOffset += size;
+			}
+			out.force(false);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+
+		try {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		FileChannel newChannel = FileChannel.open(path,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		MappedByteBuffer newMap;
+		try {
+			newMap = newChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+					newChannel.size());
+		} catch (IOException | RuntimeException e) {
+			newChannel.close();
+			throw e;
+		}
+		FileChannel oldChannel = channel;
+		channel = newChannel;
+		map = newMap;
+		index.clear();
+		index.putAll(kept);
+		oldChannel.close();
+	}
+
+	/**
+	 * Closes the cache file and gives up the lock on it. Closing a cache that
+	 * has already been closed has no effect.
+	 * 
+	 * @throws IOException
+	 *             when the file cannot be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if (channel != null) {
+				channel.close();
+				channel = null;
+			}
+		} finally {
+			map = null;
+			if (lock.isValid()) {
+				lock.release();
+			}
+			lock.channel().close();
+		}
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
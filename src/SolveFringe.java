@@ -1,13 +1,16 @@
 /**
  * <p>
  * This interface was created to let the puzzle-solving process easily switch
- * between depth-first search and breadth-first search. This interface allows
- * polymorphism between <b>StackFringe</b> and <b>QueueFringe</b>.
+ * between breadth-first search and A* search. This interface allows
+ * polymorphism between <b>QueueFringe</b> and <b>PriorityFringe</b>.
+ * Depth-first search does not use a fringe; see
+ * <b>InPlaceDepthFirstSearch</b>.
  * </p>
  * 
  * <p>
  * A SolveFringe will contain a series of <b>SolveFringeElement</b>s in a
- * specific order according to whether it is a StackFringe or a QueueFringe.
+ * specific order according to whether it is a QueueFringe or a
+ * PriorityFringe.
  * </p>
  */
 public interface SolveFringe {
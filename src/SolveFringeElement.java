@@ -1,4 +1,4 @@
-import java.util.Stack;
+import java.util.*;
 
 /**
  * <p>
@@ -11,6 +11,13 @@ import java.util.Stack;
  * The references of a SolveFringeElement instance, once created, are immutable.
  * </p>
  * 
+ * <p>
+ * The moves that led to an element are kept either as a chain of parent
+ * elements, or as a node of a NodeArena (see <b>recordIn</b>). A chain keeps
+ * the Trays of all the ancestors alive, so it suits searches that hold only a
+ * few paths at a time; a fringe of many elements should record them in a
+ * NodeArena instead. A chain may end at an element recorded in a NodeArena.
+ * </p>
  */
 public class SolveFringeElement {
 
@@ -39,6 +46,24 @@ public class SolveFringeElement {
 	 */
 	public final Point newBlockPosition;
 
+	/**
+	 * Represents the number of moves that led the search process from the root
+	 * of the fringe to this configuration. The root has depth 0.
+	 */
+	public final int depth;
+
+	/**
+	 * Represents the NodeArena that the moves leading to this element are
+	 * recorded in, or <b>null</b> if they are kept as a chain of parents.
+	 */
+	private final NodeArena nodes;
+
+	/**
+	 * Represents the id of this element's node in <b>nodes</b>, or -1 if
+	 * nodes is null.
+	 */
+	private final int node;
+
 	/**
 	 * Creates a new SolveFringeElement with the given arguments. All the
 	 * references set by the arguments are thereby immutable. Set parent,
@@ -69,68 +94,176 @@ public class SolveFringeElement {
 		this.parent = parent;
 		this.oldBlockPosition = oldBlockPosition;
 		this.newBlockPosition = newBlockPosition;
+		this.depth = (parent == null) ? 0 : parent.depth + 1;
+		this.nodes = null;
+		this.node = -1;
 	}
 
 	/**
-	 * <p>
-	 * Prints the series of moves that led the search process from its initial
-	 * Tray to this configuration, in the order starting from the initial Tray
-	 * and ending at this Tray.
-	 * </p>
-	 * 
-	 * <p>
-	 * Each line contains four digits and corresponds to a single move. The
-	 * first two digits represent the row/column indices of the moving Block
-	 * <i>before</i> the move. The last two digits represent the row/column
-	 * indices of the moving Block <i>after</i> the move.
-	 * </p>
+	 * Creates a new SolveFringeElement of the given depth, whose moves are
+	 * recorded as the given node of the given NodeArena.
 	 * 
-	 * <p>
-	 * This method also returns an integer value that counts all the parents of
-	 * this element and the element itself (this element, direct parent,
-	 * grandparent, grand-grandparent, and so on).
-	 * </p>
+	 * @param tray
+	 *            - the current Tray configuration that the search process is at
+	 * @param depth
+	 *            - the number of moves that led to this configuration
+	 * @param nodes
+	 *            - the NodeArena the moves are recorded in
+	 * @param node
+	 *            - the id of this element's node in nodes
+	 */
+	private SolveFringeElement(Tray tray, int depth, NodeArena nodes, int node) {
+		this.tray = tray;
+		this.parent = null;
+		this.oldBlockPosition = null;
+		this.newBlockPosition = null;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.node = node;
+	}
+
+	/**
+	 * Returns an element for the same Tray and depth as this one, whose moves
+	 * are recorded in the given NodeArena instead of by a reference to its
+	 * parent. The parent of this element must already be recorded in the
+	 * same NodeArena; if this element has no parent, it is taken to be the
+	 * initial Tray, i.e. <b>NodeArena.ROOT</b>.
 	 * 
-	 * @return the number of parents of this element
+	 * @param arena
+	 *            - the NodeArena to record the last move of this element in
+	 * @return an element recorded in arena
+	 * @throws IllegalArgumentException
+	 *             when the parent of this element is not recorded in arena
+	 * @throws NullPointerException
+	 *             when the argument is null
 	 */
-	public int printMoveTrace() {
-		outputStack = new Stack<String>();
-		printMoveTraceHelper(this);
-		int rtn = outputStack.size();
-		while (!outputStack.isEmpty()) {
-			System.out.println(outputStack.pop());
+	public SolveFringeElement recordIn(NodeArena arena) {
+		if (arena == null) {
+			throw new NullPointerException();
 		}
-		return rtn;
+		if (parent == null) {
+			return new SolveFringeElement(tray, 0, arena, NodeArena.ROOT);
+		}
+		if (parent.nodes != arena) {
+			throw new IllegalArgumentException(
+					"the parent is not recorded in the given arena");
+		}
+		return new SolveFringeElement(tray, depth, arena, arena.add(
+				parent.node, oldBlockPosition, newBlockPosition));
 	}
 
-	// ///////////////////// instance members end ///////////////////////
-
-	// ///////////////////// static members start ///////////////////////
-
 	/**
-	 * This stack is used to reverse the order of moves that
-	 * <b>printMoveTraceHelper</b> has searched through.
+	 * Returns an element for the same Tray and depth as this one, whose last
+	 * move is recorded as the given node of the given NodeArena, which has
+	 * been reserved for it (see <b>NodeArena.reserve</b>). Unlike
+	 * <b>recordIn(NodeArena)</b>, this method may be called by several
+	 * threads at once for different nodes. The parent of this element must
+	 * already be recorded in the same NodeArena.
+	 * 
+	 * @param arena
+	 *            - the NodeArena to record the last move of this element in
+	 * @param node
+	 *            - the id of the reserved node to record it as
+	 * @return an element recorded in arena
+	 * @throws IllegalArgumentException
+	 *             when this element has no parent, or its parent is not
+	 *             recorded in arena
+	 * @throws IndexOutOfBoundsException
+	 *             when node is the root or not the id of a node of arena
+	 * @throws NullPointerException
+	 *             when arena is null
 	 */
-	private static Stack<String> outputStack = null;
+	public SolveFringeElement recordIn(NodeArena arena, int node) {
+		if (arena == null) {
+			throw new NullPointerException();
+		}
+		if (parent == null || parent.nodes != arena) {
+			throw new IllegalArgumentException(
+					"the parent is not recorded in the given arena");
+		}
+		arena.set(node, parent.node, oldBlockPosition, newBlockPosition);
+		return new SolveFringeElement(tray, depth, arena, node);
+	}
 
 	/**
-	 * Adds the given argument's move string (as specified in
-	 * <b>printMoveTrace()</b>), to the <b>outputStack</b>, and then iteratively
-	 * does the same thing on the root's parent if any, then on the root's
-	 * grandparent if any, and so on. If root==null, nothing happens.
+	 * <p>
+	 * Writes the series of moves that led the search process from its initial
+	 * Tray to this configuration to the given MoveTraceWriter, in the order
+	 * starting from the initial Tray and ending at this Tray, in the format
+	 * described in the Javadoc on MoveTraceWriter. An element whose Block has
+	 * slid by more than one Point (see Solver.macroMoves) is written as one
+	 * move per Point of the slide. The writer is not flushed.
+	 * </p>
 	 * 
-	 * @param root
-	 *            - the element to start the addition process at
+	 * @param out
+	 *            - the MoveTraceWriter to write the moves to
+	 * @return the number of moves written
+	 * @throws NullPointerException
+	 *             when the argument is null
 	 */
-	private static void printMoveTraceHelper(SolveFringeElement root) {
-		while (root != null) {
-			if (root.oldBlockPosition != null && root.newBlockPosition != null) {
-				outputStack.push(root.oldBlockPosition.toString() + " "
-						+ root.newBlockPosition.toString());
+	public int writeMoveTrace(MoveTraceWriter out) {
+		int numWritten = out.numMoves();
+		// the chain of parents is walked from this element backwards, so its
+		// elements are collected before they are written
+		List<SolveFringeElement> chain = new ArrayList<SolveFringeElement>();
+		SolveFringeElement e = this;
+		for (; e != null && e.nodes == null; e = e.parent) {
+			if (e.oldBlockPosition != null && e.newBlockPosition != null) {
+				chain.add(e);
 			}
-			root = root.parent;
 		}
+		if (e != null) {
+			// the moves up to the end of the chain are in a NodeArena
+			for (int n : e.nodes.pathTo(e.node)) {
+				out.writeSlide(e.nodes.oldPositionOf(n),
+						e.nodes.newPositionOf(n));
+			}
+		}
+		for (int k = chain.size() - 1; k >= 0; k--) {
+			out.writeSlide(chain.get(k).oldBlockPosition,
+					chain.get(k).newBlockPosition);
+		}
+		return out.numMoves() - numWritten;
 	}
 
-	// ///////////////////// static members end ///////////////////////
+	/**
+	 * <p>
+	 * Writes the series of moves that led the search process from its initial
+	 * Tray to this configuration to the given MoveTraceWriter, just like
+	 * <b>writeMoveTrace(MoveTraceWriter)</b>, and then continues with the
+	 * series of moves from this configuration to the root of <b>meeting</b>.
+	 * The writer is not flushed.
+	 * </p>
+	 * 
+	 * <p>
+	 * This is meant for bidirectional search: <b>meeting</b> is an element of
+	 * a search that started at the goal configuration, and its Tray must be
+	 * equal to this element's Tray. The moves of <b>meeting</b>'s chain led
+	 * from the goal towards this configuration, so they are written in
+	 * reverse order and with their before/after positions swapped.
+	 * </p>
+	 * 
+	 * @param out
+	 *            - the MoveTraceWriter to write the moves to
+	 * @param meeting
+	 *            - an element of a backward search whose Tray equals this
+	 *            element's Tray
+	 * @return the number of moves written
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public int writeMoveTrace(MoveTraceWriter out, SolveFringeElement meeting) {
+		if (meeting == null) {
+			throw new NullPointerException();
+		}
+		int numWritten = writeMoveTrace(out);
+		for (SolveFringeElement e = meeting; e.parent != null; e = e.parent) {
+			int before = out.numMoves();
+			out.writeSlide(e.newBlockPosition, e.oldBlockPosition);
+			numWritten += out.numMoves() - before;
+		}
+		return numWritten;
+	}
+
+	// ///////////////////// instance members end ///////////////////////
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+/**
+ * <p>
+ * A SolveResult sums up a single run of <b>Solver.solve</b>: whether a
+ * solution has been found, how many moves it has, and how many Tray
+ * configurations the search process has come across. The moves themselves are
+ * written to the MoveTraceWriter passed to <b>Solver.solve</b>.
+ * </p>
+ * 
+ * <p>
+ * A SolveResult is immutable.
+ * </p>
+ */
+public class SolveResult {
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the number of moves in the solution, or -1 if there is no
+	 * solution.
+	 */
+	public final int numMoves;
+
+	/**
+	 * Represents the number of Tray configurations that the search process has
+	 * come across.
+	 */
+	public final long numStates;
+
+	/**
+	 * Initializes a SolveResult with the given numbers.
+	 * 
+	 * @param numMoves
+	 *            - the number of moves in the solution, or -1 if there is no
+	 *            solution
+	 * @param numStates
+	 *            - the number of Tray configurations that the search process
+	 *            has come across
+	 */
+	public SolveResult(int numMoves, long numStates) {
+		this.numMoves = numMoves;
+		this.numStates = numStates;
+	}
+
+	/**
+	 * Checks whether a solution has been found.
+	 * 
+	 * @return whether a solution has been found
+	 */
+	public boolean isSolved() {
+		return numMoves >= 0;
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
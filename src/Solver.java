@@ -1,4 +1,5 @@
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 
 /**
@@ -8,7 +9,8 @@ import java.util.*;
  * 
  * Refer to the Javadoc on the <b>solve</b> method for more information on the
  * search process, and to the Javadoc on the <b>main</b> method for more
- * information on the debugging flags.
+ * information on the debugging flags. To solve a whole list of puzzles in a
+ * single JVM, use BatchSolver.
  */
 public class Solver {
 
@@ -17,9 +19,29 @@ public class Solver {
 	private static boolean willPrintTime = false;
 	private static boolean willPrintNumStates = false;
 	private static boolean willPrintNumMoves = false;
-	private static int numMoves = 0;
 	private static boolean blankwiseOnly = false;
 	private static boolean blockwiseOnly = false;
+	private static boolean informedSearch = false;
+	private static boolean iterativeDeepening = false;
+	private static boolean bidirectional = false;
+	private static boolean parallel = false;
+	private static boolean offHeap = false;
+	private static boolean external = false;
+	private static boolean macroMoves = false;
+	private static boolean cached = false;
+	private static boolean symmetryReduction = false;
+	private static boolean patternDatabases = false;
+
+	/**
+	 * The SolutionCache shared by every puzzle solved in this JVM when
+	 * Solver.cached is true, opened on first use (see <b>solutionCache</b>).
+	 */
+	private static SolutionCache cache = null;
+
+	/**
+	 * Whether opening the SolutionCache has been tried yet.
+	 */
+	private static boolean cacheOpened = false;
 
 	/**
 	 * The main method of this application. It is assumed that the initial and
@@ -32,7 +54,7 @@ public class Solver {
 	 *            <ul>
 	 *            <li>First argument (optional, for debugging purposes): string
 	 *            whose first two characters are "-o" and whose remaining
-	 *            characters are one or more among A, C, M, O, S, T (no other
+	 *            characters are one or more among A, B, C, D, E, G, H, I, K, L, M, O, P, S, T, Y (no other
 	 *            characters may appear) in any order. For more information on
 	 *            what each flag means, see below.</li>
 	 *            <li>Second argument: the name of the file that specifies an
@@ -62,6 +84,58 @@ public class Solver {
 	 *            Tray configurations that the search process has come across.</li>
 	 *            <li>M: The output of this program will include the number of
 	 *            moves that the solution, if found, to this puzzle will have.</li>
+	 *            <li>H: This Solver will perform goal-directed (A*) search,
+	 *            guided by a ManhattanHeuristic, instead of DFS or BFS.</li>
+	 *            <li>I: This Solver will perform iterative-deepening A* search,
+	 *            whose memory use is bounded by the depth of the solution
+	 *            (see IterativeDeepeningSearch).</li>
+	 *            <br/>
+	 *            <br/>
+	 *            <li>B: If the goal file lists every Block of the Tray, this
+	 *            Solver will perform bidirectional breadth-first search, from
+	 *            the initial and the goal configurations at once (see
+	 *            BidirectionalSearch). Otherwise this flag has no effect.</li>
+	 *            <li>P: This Solver will perform breadth-first search on all
+	 *            available cores (see ParallelBreadthFirstSearch).</li>
+	 *            <li>D: The configurations visited by depth-first,
+	 *            breadth-first or A* search will be remembered in a
+	 *            memory-mapped temporary file instead of on the heap (see
+	 *            MappedConfigurationSet), so that the search is not limited by
+	 *            the maximum heap size.</li>
+	 *            <li>E: This Solver will perform breadth-first search with
+	 *            its levels kept in files on disk rather than on the heap
+	 *            (see ExternalBreadthFirstSearch).</li>
+	 *            <li>L: A single step of the search will slide a Block by any
+	 *            number of Points in one direction, instead of by exactly
+	 *            one. The output still lists one move per Point, so the
+	 *            solution may be longer than the shortest one. This flag has
+	 *            no effect on iterative-deepening A* search.</li>
+	 *            <li>K: Solutions will be remembered in a SolutionCache on
+	 *            disk, and a puzzle solved before, or a rotated or mirrored
+	 *            version of it, will be answered from it without any
+	 *            search. The cache file is named by the system
+	 *            property "solver.cache" (by default, tray-solutions.cache in
+	 *            the temporary directory), and is kept under the number of
+	 *            bytes given by the system property "solver.cache.size" (by
+	 *            default, 64MB). If another process is using the cache file,
+	 *            the puzzle is solved without it.</li>
+	 *            <li>Y: If the Tray and the goal are their own mirror image
+	 *            or rotation, depth-first, breadth-first and A* search will
+	 *            visit only one configuration among those that are mirror
+	 *            images or rotations of each other (see
+	 *            Symmetry.preservedBy). This flag has no effect on the
+	 *            searches of I, B, P and E.</li>
+	 *            <li>G: A* and iterative-deepening A* search will take the
+	 *            larger of the Manhattan distance and the estimate of the
+	 *            PatternDatabase of the layout of the puzzle, if
+	 *            PatternDatabaseBuilder has built one (see
+	 *            <b>patternDatabaseDirectory</b>). Otherwise this flag has no
+	 *            effect.</li>
+	 *            <br/>
+	 *            <br/>
+	 *            <i>Note: If more than one of H, I, B, P and E is set, the Solver
+	 *            will refuse to start solution process.</i> <br/>
+	 *            <br/>
 	 *            </ul>
 	 *            </p>
 	 *            
@@ -79,97 +153,53 @@ public class Solver {
 		}
 
 		if (args.length == 3) {
-			String oarg = args[0];
-			if (!oarg.matches("-o[TCAOSM]{1,}")) {
-				System.out
-						.println("The debugging option must be in the format: -o[flags]. Refer to the Javadoc on Solver.main for details.");
-				System.exit(1);
-			}
-			if (oarg.contains("T"))
-				willPrintTime = true;
-			if (oarg.contains("C"))
-				Tray.checkInvariants = true;
-			if (oarg.contains("A"))
-				blankwiseOnly = true;
-			if (oarg.contains("O"))
-				blockwiseOnly = true;
-			if (oarg.contains("S"))
-				willPrintNumStates = true;
-			if (oarg.contains("M"))
-				willPrintNumMoves = true;
-
-			if (blankwiseOnly && blockwiseOnly) {
-				System.out
-						.println("You cannot want both blank-wise search and block-wise search.");
-				System.exit(1);
-			}
+			parseFlags(args[0]);
 		}
 
-		BufferedReader inputReader = null;
-		BufferedReader outputReader = null;
 		Tray initialTray = null;
 		List<Block> desiredBlocks = null;
 
 		try {
-			if (args.length == 2) {
-				inputReader = new BufferedReader(new FileReader(args[0]));
-				outputReader = new BufferedReader(new FileReader(args[1]));
-			} else {
-				inputReader = new BufferedReader(new FileReader(args[1]));
-				outputReader = new BufferedReader(new FileReader(args[2]));
-			}
+			PuzzleParser input = new PuzzleParser(
+					PuzzleParser.readFile(args[args.length - 2]));
+			PuzzleParser output = new PuzzleParser(
+					PuzzleParser.readFile(args[args.length - 1]));
 
 			// first line of the input file must specify the tray dimensions
-			Scanner firstLineScan = new Scanner(inputReader.readLine());
-			short rowSize = firstLineScan.nextShort();
-			short colSize = firstLineScan.nextShort();
-			firstLineScan.close();
+			short rowSize = input.nextShort();
+			short colSize = input.nextShort();
+			input.skipLine();
 
 			Point.initPool(rowSize + 1, colSize + 1);
 
 			// set up the initial tray
-			List<Block> inputBlocks = new ArrayList<Block>();
-			String curLine;
-			while ((curLine = inputReader.readLine()) != null) {
-				inputBlocks.add(createBlock(curLine));
-			}
-			initialTray = new Tray(rowSize, colSize, inputBlocks);
-			inputReader.close();
+			initialTray = new Tray(rowSize, colSize, input.remainingBlocks());
 
 			// set up the final desired blocks
-			desiredBlocks = new ArrayList<Block>();
-			while ((curLine = outputReader.readLine()) != null) {
-				desiredBlocks.add(createBlock(curLine));
-			}
-			outputReader.close();
+			desiredBlocks = output.remainingBlocks();
 		} catch (IOException ioe) {
 			System.out.println("Could not open file!");
 		}
 
 		try { // solve the puzzle
-			if (!solve(initialTray, desiredBlocks)) {
-				if (willPrintTime) {
-					System.out.println("Finished in: "
-							+ (System.nanoTime() - start) / 1000000000.0
-							+ " seconds");
-				}
+			MoveTraceWriter out = new MoveTraceWriter(System.out);
+			SolveResult result = solve(initialTray, desiredBlocks, out);
+			out.flush();
+			if (willPrintTime) {
+				System.out.println("Finished in: "
+						+ (System.nanoTime() - start) / 1000000000.0
+						+ " seconds");
+			}
+			if (!result.isSolved()) {
 				System.exit(1);
-			} else {
-				if (willPrintTime) {
-					System.out.println("Finished in: "
-							+ (System.nanoTime() - start) / 1000000000.0
-							+ " seconds");
-				}
-				if (willPrintNumStates) {
-					System.out.println("Total configurations visited: "
-							+ configurationsSeen.size());
-				}
-				if (willPrintNumMoves) {
-					System.out
-							.println("Total number of moves in this solution: "
-									+ numMoves);
-				}
-				return;
+			}
+			if (willPrintNumStates) {
+				System.out.println("Total configurations visited: "
+						+ result.numStates);
+			}
+			if (willPrintNumMoves) {
+				System.out.println("Total number of moves in this solution: "
+						+ result.numMoves);
 			}
 		} catch (IllegalStateException ise) {
 			System.out
@@ -180,11 +210,99 @@ public class Solver {
 	}
 
 	/**
-	 * This set keeps track of all the configurations that the solver has
-	 * encountered, so that memoization prevents infinite loops from occurring
-	 * during solution search.
+	 * Sets the debugging flags given in the first command-line argument, as
+	 * described in the Javadoc on <b>main</b>. If the argument is malformed or
+	 * asks for contradicting flags, an explanation is printed and the
+	 * application exits with status 1.
+	 * 
+	 * @param oarg
+	 *            - a string whose first two characters are "-o", followed by
+	 *            the flags
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	static void parseFlags(String oarg) {
+		if (!oarg.matches("-o[TCAOSMHIBPDELKYG]{1,}")) {
+			System.out
+					.println("The debugging option must be in the format: -o[flags]. Refer to the Javadoc on Solver.main for details.");
+			System.exit(1);
+		}
+		if (oarg.contains("T"))
+			willPrintTime = true;
+		if (oarg.contains("C"))
+			Tray.checkInvariants = true;
+		if (oarg.contains("A"))
+			blankwiseOnly = true;
+		if (oarg.contains("O"))
+			blockwiseOnly = true;
+		if (oarg.contains("S"))
+			willPrintNumStates = true;
+		if (oarg.contains("M"))
+			willPrintNumMoves = true;
+		if (oarg.contains("H"))
+			informedSearch = true;
+		if (oarg.contains("I"))
+			iterativeDeepening = true;
+		if (oarg.contains("B"))
+			bidirectional = true;
+		if (oarg.contains("P"))
+			parallel = true;
+		if (oarg.contains("D"))
+			offHeap = true;
+		if (oarg.contains("E"))
+			external = true;
+		if (oarg.contains("L"))
+			macroMoves = true;
+		if (oarg.contains("K"))
+			cached = true;
+		if (oarg.contains("Y"))
+			symmetryReduction = true;
+		if (oarg.contains("G"))
+			patternDatabases = true;
+
+		if (blankwiseOnly && blockwiseOnly) {
+			System.out
+					.println("You cannot want both blank-wise search and block-wise search.");
+			System.exit(1);
+		}
+		if ((informedSearch ? 1 : 0) + (iterativeDeepening ? 1 : 0)
+				+ (bidirectional ? 1 : 0) + (parallel ? 1 : 0)
+				+ (external ? 1 : 0) > 1) {
+			System.out
+					.println("You cannot want more than one of A* search, iterative-deepening A* search, bidirectional search, parallel search and external-memory search.");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks whether the output should include the time taken to solve a
+	 * puzzle (flag T).
+	 * 
+	 * @return whether the time taken should be printed
+	 */
+	static boolean willPrintTime() {
+		return willPrintTime;
+	}
+
+	/**
+	 * Checks whether the output should include the number of configurations
+	 * visited (flag S).
+	 * 
+	 * @return whether the number of configurations visited should be printed
+	 */
+	static boolean willPrintNumStates() {
+		return willPrintNumStates;
+	}
+
+	/**
+	 * Checks whether the output should include the number of moves of a
+	 * solution (flag M).
+	 * 
+	 * @return whether the number of moves should be printed
 	 */
-	private static final Set<Tray> configurationsSeen = new HashSet<Tray>();
+	static boolean willPrintNumMoves() {
+		return willPrintNumMoves;
+	}
 
 	/**
 	 * <p>
@@ -198,7 +316,32 @@ public class Solver {
 	 * block-wise search is, see below.</li>
 	 * <li>Depth-first search or breadth-first search: if initialTray's
 	 * dimension is bigger than 50X50, the Solver will think that the tray is
-	 * too big for DFS and use BFS. Otherwise, the Solver will use DFS</li>
+	 * too big for DFS and use BFS. Otherwise, the Solver will use DFS, which
+	 * is performed by an InPlaceDepthFirstSearch: it applies and takes back
+	 * moves on a single Tray instead of cloning a Tray for every child. If
+	 * Solver.informedSearch is true, the Solver will instead use A* search
+	 * with a PriorityFringe, which always expands the configuration that looks
+	 * closest to the goal according to a ManhattanHeuristic. If
+	 * Solver.iterativeDeepening is true, the Solver will hand the whole search
+	 * over to an IterativeDeepeningSearch, which keeps only the current path
+	 * and a fixed-size TranspositionTable in memory. If Solver.bidirectional is
+	 * true and the goal lists every Block of the Tray, the Solver will use a
+	 * BidirectionalSearch, which grows breadth-first frontiers from both the
+	 * initial and the goal configurations. If Solver.parallel is true, the
+	 * Solver will use a ParallelBreadthFirstSearch, which expands every level
+	 * of a breadth-first search on all available cores. If Solver.external is
+	 * true, the Solver will use an ExternalBreadthFirstSearch, which keeps
+	 * every level of a breadth-first search in a file on disk. Whichever of DFS, BFS
+	 * and A* search is chosen, the visited configurations are kept in a
+	 * memory-mapped file if Solver.offHeap is true, and they are remembered
+	 * by the smallest encoding among their mirror images and rotations that
+	 * keep the puzzle as it is if Solver.symmetryReduction is true (see
+	 * <b>symmetriesOf</b>). BFS and A* search record the moves of the elements
+	 * on their fringe in a NodeArena.</li>
+	 * <li>Unit moves or slides: if Solver.macroMoves is true, every search
+	 * except IterativeDeepeningSearch will take sliding a Block by any number
+	 * of Points in one direction as a single step (see <b>tryMove</b>). This
+	 * makes long searches across big Trays much shallower.</li>
 	 * </ul>
 	 * </p>
 	 * <p>
@@ -214,165 +357,532 @@ public class Solver {
 	 * than the number of blanks in initialTray.
 	 * </p>
 	 * 
+	 * <p>
+	 * The configurations visited are remembered in a ConfigurationStore of
+	 * the search's own, and nothing else of a run is kept in static state, so
+	 * several puzzles may be solved at once on different threads (see
+	 * BatchSolver).
+	 * </p>
+	 * 
+	 * <p>
+	 * If Solver.cached is true, the SolutionCache is looked up before any of
+	 * this, under the canonical orientation of the puzzle (see
+	 * <b>SolutionCache.canonicalSymmetry</b>), so a rotated or mirrored
+	 * version of a puzzle solved before is found as well. A stored solution
+	 * that replays correctly on initialTray is mapped back to the orientation
+	 * of initialTray and written, and no configuration is visited at all.
+	 * Otherwise the solution found by the search, if any, is stored in the
+	 * canonical orientation afterwards.
+	 * </p>
+	 * 
+	 * <p>
+	 * If Solver.patternDatabases is true, A* and iterative-deepening A*
+	 * search estimate the remaining moves with the PatternDatabase of the
+	 * layout of the puzzle as well, if one has been built (see
+	 * <b>heuristicFor</b>).
+	 * </p>
+	 * 
 	 * @param initialTray
 	 *            - the initial Tray configuration to start the search process
 	 *            at
 	 * @param desiredBlocks
 	 *            - the collection of blocks in the desired final Tray
 	 *            configuration
+	 * @param out
+	 *            - the MoveTraceWriter to write the solution to, if there is
+	 *            one; it is not flushed
+	 * @return the outcome of the search
 	 * @throws IllegalStateException
 	 *             when any of the Trays in the search process fails to keep its
 	 *             invariants (only when Tray.checkInvariants is set to true)
 	 * @throws NullPointerException
 	 *             when any argument is null
 	 */
-	private static boolean solve(Tray initialTray,
+	static SolveResult solve(Tray initialTray,
+			Collection<Block> desiredBlocks, MoveTraceWriter out) {
+		if (out == null) {
+			throw new NullPointerException();
+		}
+
+		SolutionCache cache = cached ? solutionCache() : null;
+		if (cache == null) {
+			return search(initialTray, desiredBlocks, out);
+		}
+
+		// rotated and mirrored versions of a puzzle share their solution,
+		// which is kept in their common canonical orientation
+		int size = Math.max(initialTray.rowSize, initialTray.colSize);
+		Point.preparePool(size + 1, size + 1);
+		Symmetry canonical = SolutionCache.canonicalSymmetry(initialTray,
+				desiredBlocks);
+		long fingerprint = SolutionCache.fingerprint(initialTray,
+				desiredBlocks, canonical);
+		long[] moves = cache.lookup(fingerprint);
+		if (moves != null) {
+			moves = SolutionCache.replay(initialTray, desiredBlocks, moves,
+					canonical, Symmetry.IDENTITY);
+		}
+		if (moves != null) {
+			for (long move : moves) {
+				out.writeMove(MoveTraceWriter.moveFrom(move),
+						MoveTraceWriter.moveTo(move));
+			}
+			return new SolveResult(moves.length, 0);
+		}
+
+		out.startRecording();
+		SolveResult result = search(initialTray, desiredBlocks, out);
+		if (result.isSolved()) {
+			moves = SolutionCache.replay(initialTray, desiredBlocks,
+					out.recordedMoves(), Symmetry.IDENTITY, canonical);
+			try {
+				if (moves != null) {
+					cache.store(fingerprint, moves);
+				}
+			} catch (IOException ioe) {
+				// the solution has been written all the same; it just
+				// will not be found in the cache next time
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Opens the SolutionCache described in the Javadoc on <b>main</b> (flag
+	 * K), unless that has been tried before.
+	 * 
+	 * @return the SolutionCache, or <b>null</b> if it cannot be opened
+	 */
+	private static synchronized SolutionCache solutionCache() {
+		if (!cacheOpened) {
+			cacheOpened = true;
+			Path path = Paths.get(System.getProperty("solver.cache",
+					new File(System.getProperty("java.io.tmpdir"),
+							"tray-solutions.cache").getPath()));
+			long maxBytes = Long.getLong("solver.cache.size", 64L << 20);
+			try {
+				cache = new SolutionCache(path, maxBytes);
+			} catch (IOException | IllegalArgumentException e) {
+				// e.g. another process is using the cache; search instead
+				cache = null;
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns the directory that PatternDatabaseBuilder saves pattern
+	 * databases in and that flag G looks them up in: the one named by the
+	 * system property "solver.pdb.dir", or tray-pdbs in the temporary
+	 * directory by default.
+	 * 
+	 * @return the directory of pattern databases
+	 */
+	static Path patternDatabaseDirectory() {
+		return Paths.get(System.getProperty("solver.pdb.dir", new File(
+				System.getProperty("java.io.tmpdir"), "tray-pdbs").getPath()));
+	}
+
+	/**
+	 * Returns the Heuristic of informed search on the given puzzle: a
+	 * ManhattanHeuristic, combined with the PatternDatabase of the layout of
+	 * the puzzle if Solver.patternDatabases is true and there is one. The
+	 * PatternDatabase is only mapped into memory here, i.e. once a search
+	 * actually needs it.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @return the Heuristic to estimate the configurations of the puzzle with
+	 */
+	private static Heuristic heuristicFor(Tray initialTray,
 			Collection<Block> desiredBlocks) {
+		Heuristic manhattan = new ManhattanHeuristic(initialTray,
+				desiredBlocks);
+		if (!patternDatabases) {
+			return manhattan;
+		}
+		try {
+			PatternDatabase pdb = PatternDatabase.load(
+					patternDatabaseDirectory(), initialTray, desiredBlocks);
+			if (pdb != null) {
+				return new PatternDatabaseHeuristic(pdb, manhattan);
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			// a damaged or foreign file only costs the better estimate
+		}
+		return manhattan;
+	}
+
+	/**
+	 * Performs the search described in the Javadoc on <b>solve</b>, without
+	 * looking at the SolutionCache.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration to start the search process
+	 *            at
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @param out
+	 *            - the MoveTraceWriter to write the solution to, if there is
+	 *            one; it is not flushed
+	 * @return the outcome of the search
+	 * @throws IllegalStateException
+	 *             when any of the Trays in the search process fails to keep its
+	 *             invariants (only when Tray.checkInvariants is set to true)
+	 */
+	private static SolveResult search(Tray initialTray,
+			Collection<Block> desiredBlocks, MoveTraceWriter out) {
+		// every Tray of the search is derived from initialTray, so they all
+		// keep a running count of the desired Blocks they contain
+		initialTray.setGoal(desiredBlocks);
+
+		if (iterativeDeepening) {
+			IterativeDeepeningSearch search = new IterativeDeepeningSearch(
+					initialTray, desiredBlocks, heuristicFor(initialTray,
+							desiredBlocks));
+			SolveFringeElement found = search.search();
+			if (found == null) {
+				return new SolveResult(-1, search.numExpanded());
+			}
+			return new SolveResult(found.writeMoveTrace(out),
+					search.numExpanded());
+		}
 
+		if (parallel) {
+			// the workers may only read the Point pool, so every Point of the
+			// Tray must exist before they start
+			Point.preparePool(initialTray.rowSize + 1, initialTray.colSize + 1);
+			ParallelBreadthFirstSearch search = new ParallelBreadthFirstSearch(
+					initialTray, desiredBlocks, Runtime.getRuntime()
+							.availableProcessors());
+			SolveFringeElement found = search.search();
+			if (found == null) {
+				return new SolveResult(-1, search.numSeen());
+			}
+			return new SolveResult(found.writeMoveTrace(out), search.numSeen());
+		}
+
+		if (external) {
+			ExternalBreadthFirstSearch search = new ExternalBreadthFirstSearch(
+					initialTray, desiredBlocks, null);
+			SolveFringeElement found = search.search();
+			if (found == null) {
+				return new SolveResult(-1, search.numSeen());
+			}
+			return new SolveResult(found.writeMoveTrace(out), search.numSeen());
+		}
+
+		if (bidirectional) {
+			Tray goalTray = BidirectionalSearch.goalTrayOf(initialTray,
+					desiredBlocks);
+			if (goalTray != null) {
+				BidirectionalSearch search = new BidirectionalSearch(
+						initialTray, goalTray);
+				int numMoves = search.search(out);
+				return new SolveResult(numMoves, search.numSeen());
+			}
+		}
+
+		ConfigurationStore configurationsSeen;
+		if (offHeap) {
+			configurationsSeen = new MappedConfigurationSet(
+					initialTray.encodingLength(), null);
+		} else {
+			configurationsSeen = new ConfigurationSet(
+					initialTray.encodingLength());
+		}
+		try {
+			return search(initialTray, desiredBlocks, configurationsSeen, out);
+		} finally {
+			// the table of a MappedConfigurationSet is a file of its own
+			configurationsSeen.close();
+		}
+	}
+
+	/**
+	 * Performs the search described in the Javadoc on <b>solve</b> that
+	 * remembers the configurations visited in the given ConfigurationStore,
+	 * i.e. depth-first, breadth-first or A* search.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration to start the search process
+	 *            at
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @param configurationsSeen
+	 *            - the empty ConfigurationStore to remember the
+	 *            configurations visited in
+	 * @param out
+	 *            - the MoveTraceWriter to write the solution to, if there is
+	 *            one; it is not flushed
+	 * @return the outcome of the search
+	 * @throws IllegalStateException
+	 *             when any of the Trays in the search process fails to keep its
+	 *             invariants (only when Tray.checkInvariants is set to true)
+	 */
+	private static SolveResult search(Tray initialTray,
+			Collection<Block> desiredBlocks,
+			ConfigurationStore configurationsSeen, MoveTraceWriter out) {
 		SolveFringe fringe = null;
-		// BFS if Tray is too big for DFS
-		if (initialTray.rowSize > 50 && initialTray.colSize > 50) {
+		if (informedSearch) {
+			fringe = new PriorityFringe(heuristicFor(initialTray,
+					desiredBlocks));
+		} else if (initialTray.rowSize > 50 && initialTray.colSize > 50) {
+			// BFS if Tray is too big for DFS
 			fringe = new QueueFringe();
 		} else {
-			fringe = new StackFringe();
+			// DFS only ever looks at one branch, so it works on a single Tray
+			InPlaceDepthFirstSearch search = new InPlaceDepthFirstSearch(
+					initialTray, desiredBlocks, configurationsSeen);
+			int numMoves = search.search(out);
+			return new SolveResult(numMoves, search.numSeen());
 		}
 
-		fringe.put(new SolveFringeElement(initialTray, null, null, null));
+		Symmetry[] symmetries = symmetriesOf(initialTray, desiredBlocks);
+		if (!informedSearch) {
+			configurationsSeen.add(initialTray.encode(symmetries));
+		}
+		// the elements on the fringe record their moves in an arena, so
+		// they do not keep the Trays of their ancestors alive
+		NodeArena nodes = new NodeArena();
+		fringe.put(new SolveFringeElement(initialTray, null, null, null)
+				.recordIn(nodes));
 
+		List<SolveFringeElement> children = new ArrayList<SolveFringeElement>();
 		while (!fringe.isEmpty()) {
 			SolveFringeElement curElem = fringe.take();
 			Tray currentConfig = curElem.tray;
 
 			if (isDesiredConfiguration(currentConfig, desiredBlocks)) {
-				numMoves = curElem.printMoveTrace();
-				return true;
+				return new SolveResult(curElem.writeMoveTrace(out),
+						configurationsSeen.size());
 			}
 
-			if (configurationsSeen.contains(currentConfig)) {
+			// A* closes a configuration only once it is expanded, so that a
+			// shorter path found later is not thrown away
+			if (informedSearch
+					&& !configurationsSeen.add(currentConfig.encode(symmetries))) {
 				continue;
 			}
-			configurationsSeen.add(currentConfig);
-
-			if (blockwiseOnly
-					|| (!blankwiseOnly && currentConfig.numBlocks < currentConfig.numBlanks)) {
-				// block-wise search
-				for (int i = 0; i < currentConfig.numBlocks; i++) {
-					for (Direction d : Direction.all) {
-						Point oldBlockPosition = currentConfig.getBlock(i)
-								.getUpperLeft();
-						Tray nextConfig = currentConfig.clone();
-						try {
-							nextConfig.moveBlock(i, d);
-						} catch (IllegalArgumentException iae) {
-							// the block cannot be moved in this direction
-							// so do not add the new configuration to the fringe
-							continue;
-						}
-						Point newBlockPosition = nextConfig.getBlock(i)
-								.getUpperLeft();
-						fringe.put(new SolveFringeElement(nextConfig, curElem,
-								oldBlockPosition, newBlockPosition));
+
+			children.clear();
+			expand(curElem, children);
+			for (SolveFringeElement child : children) {
+				// configurations are compared by their canonical encodings,
+				// so a child that merely permutes same-shape Blocks of an
+				// already seen configuration (or, with symmetry reduction,
+				// mirrors it) never reaches the fringe
+				long[] key = child.tray.encode(symmetries);
+				if (informedSearch) {
+					if (configurationsSeen.contains(key)) {
+						continue;
 					}
+				} else if (!configurationsSeen.add(key)) {
+					continue;
 				}
-			} else { // blank-wise search
-				Iterator<Point> blanksItr = currentConfig.blanksIterator();
-				while (blanksItr.hasNext()) {
-					Point curBlank = blanksItr.next();
-					for (Direction d : Direction.all) {
-						int i = -1;
-						try {
-							i = currentConfig.findBlockContaining(curBlank.go(d
-									.reverse()));
-						} catch (IndexOutOfBoundsException ioobe) {
-							continue;
-						}
-						if (i != -1) {
-							Point oldBlockPosition = currentConfig.getBlock(i)
-									.getUpperLeft();
-							Tray nextConfig = currentConfig.clone();
-							try {
-								nextConfig.moveBlock(i, d);
-							} catch (IllegalArgumentException iae) {
-								// the block cannot be moved in this direction
-								// so do not add the new configuration to the
-								// fringe
-								continue;
-							}
-							Point newBlockPosition = nextConfig.getBlock(i)
-									.getUpperLeft();
-							fringe.put(new SolveFringeElement(nextConfig,
-									curElem, oldBlockPosition, newBlockPosition));
-						}
+				fringe.put(child.recordIn(nodes));
+			}
+		}
+		return new SolveResult(-1, configurationsSeen.size());
+	}
+
+	/**
+	 * Adds to <b>children</b> an element for every configuration that is one
+	 * legal move away from the given element's Tray, performing either
+	 * block-wise or blank-wise search as described in the Javadoc on
+	 * <b>solve</b>. No check against already seen configurations is made.
+	 * 
+	 * @param curElem
+	 *            - the element whose Tray is being expanded
+	 * @param children
+	 *            - the list to add the new elements to
+	 * @throws IllegalStateException
+	 *             when any of the new Trays fails to keep its invariants (only
+	 *             when Tray.checkInvariants is set to true)
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	static void expand(SolveFringeElement curElem,
+			List<SolveFringeElement> children) {
+		Tray currentConfig = curElem.tray;
+		if (isBlockwise(currentConfig)) {
+			// block-wise search
+			for (int i = 0; i < currentConfig.numBlocks; i++) {
+				for (Direction d : Direction.all) {
+					tryMove(children, curElem, i, d);
+				}
+			}
+		} else { // blank-wise search
+			Iterator<Point> blanksItr = currentConfig.blanksIterator();
+			while (blanksItr.hasNext()) {
+				Point curBlank = blanksItr.next();
+				for (Direction d : Direction.all) {
+					int i = currentConfig.findBlockNextTo(curBlank,
+							d.reverse());
+					if (i != -1
+							&& isLeadingEdgeCorner(currentConfig.getBlock(i),
+									curBlank, d)) {
+						tryMove(children, curElem, i, d);
 					}
 				}
 			}
 		}
-		return false;
 	}
 
 	/**
-	 * Checks whether config contains all the Blocks defined in desiredBlocks.
+	 * Checks whether the search process should perform block-wise search
+	 * (rather than blank-wise search) on the given Tray, as described in the
+	 * Javadoc on <b>solve</b>.
 	 * 
 	 * @param config
-	 *            - the Tray configuration to compare
+	 *            - the Tray configuration to be expanded
+	 * @return whether block-wise search should be performed
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	static boolean isBlockwise(Tray config) {
+		return blockwiseOnly
+				|| (!blankwiseOnly && config.numBlocks < config.numBlanks);
+	}
+
+	/**
+	 * Returns the Symmetries under which the search process encodes the
+	 * configurations of the given puzzle (see <b>Tray.encode(Symmetry[])</b>):
+	 * those that map the puzzle onto itself if Solver.symmetryReduction is
+	 * true, and IDENTITY alone otherwise.
+	 * 
+	 * @param initialTray
+	 *            - the initial Tray configuration
 	 * @param desiredBlocks
 	 *            - the collection of blocks in the desired final Tray
 	 *            configuration
-	 * @return whether config contains all the Blocks defined in desiredBlocks
+	 * @return the Symmetries to encode configurations under
 	 * @throws NullPointerException
 	 *             when any argument is null
 	 */
-	private static boolean isDesiredConfiguration(Tray config,
+	static Symmetry[] symmetriesOf(Tray initialTray,
 			Collection<Block> desiredBlocks) {
-		for (Block b : desiredBlocks) {
-			if (!config.containsBlock(b)) {
-				return false;
+		if (!symmetryReduction) {
+			return new Symmetry[] { Symmetry.IDENTITY };
+		}
+		return Symmetry.preservedBy(initialTray, desiredBlocks);
+	}
+
+	/**
+	 * Checks whether a single step of the search process slides a Block by
+	 * any number of Points, rather than by exactly one.
+	 * 
+	 * @return whether a single step slides a Block by any number of Points
+	 */
+	static boolean usesMacroMoves() {
+		return macroMoves;
+	}
+
+	/**
+	 * Tries moving the given Block of the given element's Tray in the given
+	 * direction. If the move is legal, an element for the resulting
+	 * configuration is added to <b>children</b>. The Tray is only cloned once
+	 * <b>Tray.canMove</b> has accepted the move. If Solver.macroMoves is
+	 * true, an element is added for every distance the Block can slide in
+	 * the given direction; each of them records the positions of the Block
+	 * before and after the whole slide, and
+	 * <b>SolveFringeElement.writeMoveTrace</b> breaks it up into unit
+	 * moves.
+	 * 
+	 * @param children
+	 *            - the list to add the new element to
+	 * @param curElem
+	 *            - the element whose Tray is being expanded
+	 * @param blockIdx
+	 *            - the unique index of the Block to move
+	 * @param d
+	 *            - the Direction in which to move the Block
+	 */
+	private static void tryMove(List<SolveFringeElement> children,
+			SolveFringeElement curElem, int blockIdx, Direction d) {
+		Tray currentConfig = curElem.tray;
+		if (!currentConfig.canMove(blockIdx, d)) {
+			// the block cannot be moved in this direction
+			// so do not add the new configuration
+			return;
+		}
+		Point oldBlockPosition = currentConfig.getBlock(blockIdx).getUpperLeft();
+		Tray nextConfig = currentConfig.clone();
+		nextConfig.moveBlock(blockIdx, d);
+		while (true) {
+			Point newBlockPosition = nextConfig.getBlock(blockIdx)
+					.getUpperLeft();
+			children.add(new SolveFringeElement(nextConfig, curElem,
+					oldBlockPosition, newBlockPosition));
+			if (!macroMoves || !nextConfig.canMove(blockIdx, d)) {
+				return;
 			}
+			nextConfig = nextConfig.clone();
+			nextConfig.moveBlock(blockIdx, d);
 		}
-		return true;
 	}
 
 	/**
-	 * Scans through the given String, which must be in the format
-	 * "ULrow ULcol LRrow LRcol", and returns the corresponding Block.
+	 * <p>
+	 * Checks whether the given blank is the upper or left corner of the
+	 * <i>leading edge</i> of the given Block moving in the given direction,
+	 * i.e. the row or column of Points that the Block would newly occupy.
+	 * </p>
+	 * 
+	 * <p>
+	 * In blank-wise search, every blank along a leading edge finds the same
+	 * Block and the same move. Since a move is only legal when the whole
+	 * leading edge is blank, it suffices to try the move from a single blank
+	 * of the edge, and this method picks that blank.
+	 * </p>
+	 * 
+	 * @param b
+	 *            - the Block that would be moved
+	 * @param blank
+	 *            - a blank directly next to b in direction d
+	 * @param d
+	 *            - the Direction in which b would be moved
+	 * @return whether blank is the upper or left corner of the leading edge
+	 */
+	static boolean isLeadingEdgeCorner(Block b, Point blank, Direction d) {
+		if (d == Direction.LEFT || d == Direction.RIGHT) {
+			return blank.rowIdx == b.getUpperLeft().rowIdx;
+		}
+		return blank.colIdx == b.getUpperLeft().colIdx;
+	}
+
+	/**
+	 * Checks whether config contains all the Blocks defined in desiredBlocks.
+	 * If config keeps track of desiredBlocks (see <b>Tray.setGoal</b>), this
+	 * is a single comparison of its running count of satisfied goal Blocks;
+	 * otherwise every desired Block is looked up in config.
 	 * 
-	 * @param line
-	 *            - the String input to parse
-	 * @return the Block whose toString() would return the exact same format as
-	 *         the given String (not counting whitespace)
-	 * @throws IllegalArgumentException
-	 *             when there are more or less than four arguments in the input,
-	 *             or when the input contains a non-integer value, or when the
-	 *             input contains an integer value that is outside the range
-	 *             defined by the type <b>short</b>, or when the Point defined
-	 *             by LRrow and LRcol is not on the lower right side of the
-	 *             Point defined by ULrow and ULcol ("lower right side" includes
-	 *             same row and same column)
-	 * @throws IndexOutOfBoundsException
-	 *             when any of the argument's integers is negative
+	 * @param config
+	 *            - the Tray configuration to compare
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @return whether config contains all the Blocks defined in desiredBlocks
 	 * @throws NullPointerException
-	 *             when the argument is null
+	 *             when any argument is null
 	 */
-	private static Block createBlock(String line) {
-		Scanner scan = new Scanner(line);
-		try {
-			short row1 = scan.nextShort();
-			short col1 = scan.nextShort();
-			short row2 = scan.nextShort();
-			short col2 = scan.nextShort();
-			if (scan.hasNext()) {
-				throw new IllegalArgumentException(
-						"too many arguments in the input");
+	static boolean isDesiredConfiguration(Tray config,
+			Collection<Block> desiredBlocks) {
+		if (config.tracksGoal(desiredBlocks)) {
+			return config.isGoalMet();
+		}
+		for (Block b : desiredBlocks) {
+			if (!config.containsBlock(b)) {
+				return false;
 			}
-			return Block.getInstance(row1, col1, row2, col2);
-		} catch (InputMismatchException ime) {
-			throw new IllegalArgumentException(
-					"non-integer argument or value too big");
-		} catch (NoSuchElementException nsee) {
-			throw new IllegalArgumentException("too few arguments in the input");
-		} finally {
-			scan.close();
 		}
+		return true;
 	}
+
 	// ///////////////////// static members end ///////////////////////
 }
@@ -0,0 +1,147 @@
+import java.io.*;
+import java.net.*;
+
+/**
+ * This class hands a puzzle over to a running SolverDaemon and prints what it
+ * sends back, so that it can stand in for <b>Solver.main</b> on the command
+ * line: the move trace goes to the standard output, and the exit status is 1
+ * if the puzzle has no solution. Only the client's small JVM is started per
+ * puzzle; the search itself runs in the daemon's warm one.
+ */
+public class SolverClient {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The main method of the client.
+	 * 
+	 * @param args
+	 *            - the command-line arguments:
+	 *            <p>
+	 *            <ul>
+	 *            <li>First argument (optional): string whose first two
+	 *            characters are "-o" and whose remaining characters are one or
+	 *            more among M, S, T, which mean what they mean for
+	 *            <b>Solver.main</b>. The search flags are those the daemon was
+	 *            started with.</li>
+	 *            <li>Second argument (optional): the port of the daemon; by
+	 *            default, <b>SolverDaemon.DEFAULT_PORT</b></li>
+	 *            <li>Third argument: the name of the file that specifies an
+	 *            initial tray configuration</li>
+	 *            <li>Fourth argument: the name of the file that specifies a
+	 *            desired goal configuration</li>
+	 *            </ul>
+	 *            </p>
+	 */
+	public static void main(String[] args) {
+		long start = System.nanoTime();
+
+		int first = 0;
+		String flags = "";
+		if (args.length > 0 && args[0].startsWith("-o")) {
+			flags = args[0];
+			first = 1;
+			if (!flags.matches("-o[TSM]{1,}")) {
+				System.out
+						.println("The client only takes the flags T, S and M. Refer to the Javadoc on SolverClient.main for details.");
+				System.exit(1);
+			}
+		}
+		if (args.length - first < 2 || args.length - first > 3) {
+			System.out
+					.println("Usage: SolverClient [-o[flags]] [port] init goal. Refer to the Javadoc on SolverClient.main for details.");
+			System.exit(1);
+		}
+		int port = SolverDaemon.DEFAULT_PORT;
+		if (args.length - first == 3) {
+			try {
+				port = Integer.parseInt(args[first]);
+			} catch (NumberFormatException nfe) {
+				System.out.println("The port must be an integer.");
+				System.exit(1);
+			}
+		}
+
+		byte[] init = null;
+		byte[] goal = null;
+		try {
+			init = PuzzleParser.readFile(args[args.length - 2]);
+			goal = PuzzleParser.readFile(args[args.length - 1]);
+		} catch (IOException ioe) {
+			System.out.println("Could not open file!");
+			System.exit(1);
+		}
+
+		String status = null;
+		try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			OutputStream request = new BufferedOutputStream(
+					s.getOutputStream());
+			writeSection(request, init);
+			writeSection(request, goal);
+			request.flush();
+			s.shutdownOutput();
+
+			// everything up to the status line is the move trace
+			BufferedReader response = new BufferedReader(new InputStreamReader(
+					s.getInputStream()));
+			PrintStream trace = new PrintStream(new BufferedOutputStream(
+					new FileOutputStream(FileDescriptor.out)), false);
+			String line;
+			while ((line = response.readLine()) != null) {
+				if (line.startsWith("#")) {
+					status = line;
+					break;
+				}
+				trace.println(line);
+			}
+			trace.flush();
+		} catch (IOException ioe) {
+			System.out.println("Could not reach the daemon on port " + port
+					+ ": " + ioe.getMessage());
+			System.exit(1);
+		}
+
+		if (status == null || status.startsWith("# error")) {
+			System.out.println(status == null ? "The daemon gave no answer."
+					: status.substring(2));
+			System.exit(1);
+		}
+		String[] fields = status.split(" ");
+		if (flags.contains("T")) {
+			System.out.println("Finished in: " + (System.nanoTime() - start)
+					/ 1000000000.0 + " seconds");
+		}
+		if (fields[1].equals("unsolvable")) {
+			System.exit(1);
+		}
+		if (flags.contains("S")) {
+			System.out.println("Total configurations visited: " + fields[3]);
+		}
+		if (flags.contains("M")) {
+			System.out.println("Total number of moves in this solution: "
+					+ fields[2]);
+		}
+	}
+
+	/**
+	 * Writes the given content of a configuration file as a section of a
+	 * request, i.e. followed by a line holding a single ".".
+	 * 
+	 * @param request
+	 *            - the stream of the request
+	 * @param content
+	 *            - the content of a configuration file
+	 * @throws IOException
+	 *             when the stream fails
+	 */
+	private static void writeSection(OutputStream request, byte[] content)
+			throws IOException {
+		request.write(content);
+		if (content.length > 0 && content[content.length - 1] != '\n') {
+			request.write('\n');
+		}
+		request.write(".\n".getBytes());
+	}
+
+	// ///////////////////// static members end ///////////////////////
+}
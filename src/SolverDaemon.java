@@ -0,0 +1,244 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * <p>
+ * This class is a long-lived driver of this application: a daemon that solves
+ * puzzles sent to it over a TCP connection on the loopback interface. Since
+ * the JVM keeps running between puzzles, the Point and Block pools stay
+ * populated and the search code stays JIT-compiled, so only the first puzzle
+ * pays for the warm-up of the JVM.
+ * </p>
+ * 
+ * <p>
+ * Every connection carries a single puzzle. The connections are served by a
+ * fixed number of threads, given by the system property
+ * "solver.daemon.threads" (by default, the number of processors), so that
+ * that many puzzles are solved at once (see <b>Solver.solve</b>) and the
+ * others wait for their turn instead of sharing the heap. A request that
+ * has not arrived in full within <b>READ_TIMEOUT</b> milliseconds is given
+ * up on.
+ * A request consists of the lines of an initial configuration file, a line
+ * holding a single ".", and the lines of a goal configuration file, ended by
+ * another "." line or by the end of the stream. The response consists of the
+ * move trace of the solution, in the format described in the Javadoc on
+ * MoveTraceWriter, followed by a single status
+ * line starting with '#':
+ * <ul>
+ * <li>"# solved &lt;moves&gt; &lt;configurations visited&gt;"</li>
+ * <li>"# unsolvable &lt;configurations visited&gt;"</li>
+ * <li>"# error &lt;message&gt;", when the request cannot be parsed or read,
+ * declares a Tray with more than <b>MAX_TRAY_SIZE</b> rows or columns,
+ * the search has failed, e.g. on a temporary file of <b>-oD</b> or
+ * <b>-oE</b>, or has run out of memory</li>
+ * </ul>
+ * SolverClient speaks this protocol on behalf of a command line.
+ * </p>
+ */
+public class SolverDaemon {
+
+	// ///////////////////// static members start ///////////////////////
+
+	/**
+	 * The port that the daemon listens on if none is given.
+	 */
+	public static final int DEFAULT_PORT = 6161;
+
+	/**
+	 * The number of milliseconds that the daemon waits for the next bytes of
+	 * a request before giving up on it.
+	 */
+	public static final int READ_TIMEOUT = 30000;
+
+	/**
+	 * The largest number of rows or columns of a Tray that the daemon accepts.
+	 * The Point pool is shared by every request and never shrinks, so a
+	 * request may not grow it beyond this size.
+	 */
+	public static final int MAX_TRAY_SIZE = 256;
+
+	/**
+	 * The main method of the daemon. It only returns if the port cannot be
+	 * listened on.
+	 * 
+	 * @param args
+	 *            - the command-line arguments:
+	 *            <p>
+	 *            <ul>
+	 *            <li>First argument (optional): the debugging flags, in the
+	 *            format described in the Javadoc on <b>Solver.main</b>. They
+	 *            apply to every puzzle; T, S and M are left to SolverClient.</li>
+	 *            <li>Second argument (optional): the port to listen on; by
+	 *            default, <b>DEFAULT_PORT</b></li>
+	 *            </ul>
+	 *            </p>
+	 */
+	public static void main(String[] args) {
+		int first = 0;
+		if (args.length > 0 && args[0].startsWith("-o")) {
+			Solver.parseFlags(args[0]);
+			first = 1;
+		}
+		if (args.length - first > 1) {
+			System.out
+					.println("Usage: SolverDaemon [-o[flags]] [port]. Refer to the Javadoc on SolverDaemon.main for details.");
+			System.exit(1);
+		}
+		int port = DEFAULT_PORT;
+		if (args.length - first == 1) {
+			try {
+				port = Integer.parseInt(args[first]);
+			} catch (NumberFormatException nfe) {
+				System.out.println("The port must be an integer.");
+				System.exit(1);
+			}
+		}
+
+		int numThreads = Integer.getInteger("solver.daemon.threads", Runtime
+				.getRuntime().availableProcessors());
+		if (numThreads <= 0) {
+			System.out
+					.println("The number of threads must be positive (solver.daemon.threads).");
+			System.exit(1);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try (ServerSocket server = new ServerSocket(port, 50,
+				InetAddress.getLoopbackAddress())) {
+			System.out.println("Listening on port " + server.getLocalPort());
+			while (true) {
+				final Socket connection = server.accept();
+				pool.execute(new Runnable() {
+					@Override
+					public void run() {
+						serve(connection);
+					}
+				});
+			}
+		} catch (IOException ioe) {
+			System.out.println("Could not listen on port " + port + ": "
+					+ ioe.getMessage());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads a puzzle from the given connection, solves it, writes the
+	 * response described in the Javadoc on this class, and closes the
+	 * connection.
+	 * 
+	 * @param connection
+	 *            - the connection to serve
+	 */
+	static void serve(Socket connection) {
+		try (Socket s = connection) {
+			s.setSoTimeout(READ_TIMEOUT);
+			InputStream in = new BufferedInputStream(s.getInputStream());
+			OutputStream out = s.getOutputStream();
+			String status;
+			try {
+				byte[] init = readSection(in);
+				byte[] goal = readSection(in);
+				status = solve(init, goal, out);
+			} catch (SocketTimeoutException ste) {
+				status = "error the request did not arrive within "
+						+ READ_TIMEOUT + " ms";
+			} catch (RuntimeException re) {
+				// e.g. a malformed request, a violated invariant, or a
+				// temporary file of -oD or -oE that could not be written
+				status = "error " + re;
+			} catch (OutOfMemoryError oome) {
+				// the search that ran out is unreachable by now, so the
+				// daemon goes on serving the other puzzles
+				status = "error out of memory; the puzzle is too big for the heap of this daemon";
+			}
+			out.write(("# " + status + System.lineSeparator()).getBytes());
+			out.flush();
+		} catch (IOException ioe) {
+			// the client has gone away; there is no one left to tell
+		}
+	}
+
+	/**
+	 * Solves the puzzle given by the contents of an initial and a goal
+	 * configuration file, writes its move trace to the given stream, and
+	 * returns the status to report (without the leading '#').
+	 * 
+	 * @param init
+	 *            - the content of the initial configuration file
+	 * @param goal
+	 *            - the content of the goal configuration file
+	 * @param stream
+	 *            - the stream to write the move trace to
+	 * @return the status to report
+	 * @throws IllegalArgumentException
+	 *             when either content cannot be parsed, or the Tray has more
+	 *             than <b>MAX_TRAY_SIZE</b> rows or columns
+	 * @throws IndexOutOfBoundsException
+	 *             when either content holds a negative index
+	 * @throws IllegalStateException
+	 *             when any of the Trays in the search process fails to keep its
+	 *             invariants (only when Tray.checkInvariants is set to true)
+	 */
+	private static String solve(byte[] init, byte[] goal, OutputStream stream) {
+		PuzzleParser input = new PuzzleParser(init);
+		short rowSize = input.nextShort();
+		short colSize = input.nextShort();
+		input.skipLine();
+		if (rowSize > MAX_TRAY_SIZE || colSize > MAX_TRAY_SIZE) {
+			throw new IllegalArgumentException("the tray is bigger than "
+					+ MAX_TRAY_SIZE + "x" + MAX_TRAY_SIZE);
+		}
+		Point.preparePool(rowSize + 1, colSize + 1);
+		Tray initialTray = new Tray(rowSize, colSize, input.remainingBlocks());
+		List<Block> desiredBlocks = new PuzzleParser(goal).remainingBlocks();
+
+		MoveTraceWriter out = new MoveTraceWriter(stream);
+		SolveResult result = Solver.solve(initialTray, desiredBlocks, out);
+		out.flush();
+		if (result.isSolved()) {
+			return "solved " + result.numMoves + " " + result.numStates;
+		}
+		return "unsolvable " + result.numStates;
+	}
+
+	/**
+	 * Reads the lines of the given stream up to a line holding a single "."
+	 * or the end of the stream, whichever comes first. The "." line itself is
+	 * left out.
+	 * 
+	 * @param in
+	 *            - the stream to read
+	 * @return the bytes read
+	 * @throws IOException
+	 *             when the stream fails
+	 */
+	static byte[] readSection(InputStream in) throws IOException {
+		ByteArrayOutputStream section = new ByteArrayOutputStream();
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1) {
+			if (b != '\n') {
+				line.write(b);
+				continue;
+			}
+			byte[] bytes = line.toByteArray();
+			int length = bytes.length;
+			if (length > 0 && bytes[length - 1] == '\r') {
+				length--;
+			}
+			if (length == 1 && bytes[0] == '.') {
+				return section.toByteArray();
+			}
+			section.write(bytes, 0, bytes.length);
+			section.write('\n');
+			line.reset();
+		}
+		line.writeTo(section);
+		return section.toByteArray();
+	}
+
+	// ///////////////////// static members end ///////////////////////
+}
@@ -0,0 +1,333 @@
+import java.util.*;
+
+/**
+ * <p>
+ * This <b>enum</b> type represents a symmetry of a rectangle, i.e. one of the
+ * eight ways to rotate and mirror a Tray onto a Tray of the same or of the
+ * transposed dimensions: the identity, the rotations by 90, 180 and 270
+ * degrees clockwise, the mirror images across the horizontal and the vertical
+ * axis, and the mirror images across the two diagonals.
+ * </p>
+ * 
+ * <p>
+ * Every Symmetry is the composition of an optional transposition (swapping
+ * row and column indices, and thereby the dimensions) followed by optional
+ * flips of the row and column indices within the resulting dimensions. Since
+ * Points, Blocks and Directions do not know the dimensions of the Tray they
+ * belong to, the dimensions are given to the methods that need them, as those
+ * of the Tray <i>before</i> the Symmetry is applied.
+ * </p>
+ * 
+ * <p>
+ * Applying a Symmetry that transposes the Tray may create Points beyond the
+ * original dimensions; make sure that the Point pool covers them (see
+ * <b>Point.preparePool</b>).
+ * </p>
+ */
+public enum Symmetry {
+
+	// ///////////////////// static members start ///////////////////////
+
+	IDENTITY(false, false, false), ROTATE_90(true, false, true), ROTATE_180(
+			false, true, true), ROTATE_270(true, true, false), FLIP_ROWS(false,
+			true, false), FLIP_COLUMNS(false, false, true), TRANSPOSE(true,
+			false, false), ANTI_TRANSPOSE(true, true, true);
+
+	/**
+	 * A static, immutable array containing all eight Symmetries, starting with
+	 * IDENTITY.
+	 */
+	public static final Symmetry[] all = { IDENTITY, ROTATE_90, ROTATE_180,
+			ROTATE_270, FLIP_ROWS, FLIP_COLUMNS, TRANSPOSE, ANTI_TRANSPOSE };
+
+	/**
+	 * <p>
+	 * Returns the Symmetries that map the puzzle of getting from the given
+	 * Tray to a configuration that contains the given Blocks onto itself: those
+	 * that keep the dimensions of the Tray, the multiset of its Block shapes,
+	 * and the set of desired Blocks. They form a group, which always contains
+	 * IDENTITY.
+	 * </p>
+	 * 
+	 * <p>
+	 * Since every move of a configuration has an image that is a move of the
+	 * image of the configuration, and the goal is its own image, a
+	 * configuration and its image under any of these Symmetries are exactly
+	 * as many moves away from the goal. A search may therefore treat them as
+	 * one (see <b>Tray.encode(Symmetry[])</b>) and still find a solution
+	 * whenever there is one.
+	 * </p>
+	 * 
+	 * @param tray
+	 *            - the initial Tray configuration
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @return the Symmetries that map the puzzle onto itself, starting with
+	 *         IDENTITY
+	 * @throws NullPointerException
+	 *             when any argument is or contains null
+	 */
+	public static Symmetry[] preservedBy(Tray tray,
+			Collection<Block> desiredBlocks) {
+		int rowSize = tray.rowSize;
+		int colSize = tray.colSize;
+		Set<Block> goal = new HashSet<Block>(desiredBlocks);
+		for (Block b : goal) {
+			Point lr = b.getLowerRight();
+			if (lr.rowIdx >= rowSize || lr.colIdx >= colSize) {
+				// a goal off the Tray cannot be met in any orientation
+				return new Symmetry[] { IDENTITY };
+			}
+		}
+		int[] shapes = new int[tray.numBlocks];
+		for (int i = 0; i < shapes.length; i++) {
+			shapes[i] = tray.getBlock(i).shapeId();
+		}
+		Arrays.sort(shapes);
+
+		List<Symmetry> group = new ArrayList<Symmetry>();
+		for (Symmetry s : all) {
+			if (s.transposes && rowSize != colSize) {
+				continue;
+			}
+			boolean preserved = true;
+			for (Block b : goal) {
+				if (!goal.contains(s.apply(b, rowSize, colSize))) {
+					preserved = false;
+					break;
+				}
+			}
+			if (preserved && s.transposes) {
+				int[] images = new int[shapes.length];
+				for (int i = 0; i < images.length; i++) {
+					images[i] = s.apply(tray.getBlock(i), rowSize, colSize)
+							.shapeId();
+				}
+				Arrays.sort(images);
+				preserved = Arrays.equals(images, shapes);
+			}
+			if (preserved) {
+				group.add(s);
+			}
+		}
+		return group.toArray(new Symmetry[group.size()]);
+	}
+
+	// ///////////////////// static members end ///////////////////////
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represent whether this Symmetry swaps row and column indices, and
+	 * whether it then flips the row indices and the column indices.
+	 */
+	private final boolean transposes, flipsRows, flipsColumns;
+
+	private Symmetry(boolean transposes, boolean flipsRows,
+			boolean flipsColumns) {
+		this.transposes = transposes;
+		this.flipsRows = flipsRows;
+		this.flipsColumns = flipsColumns;
+	}
+
+	/**
+	 * Returns the Symmetry that undoes this one.
+	 * 
+	 * @return ROTATE_270 if this is ROTATE_90; ROTATE_90 if this is
+	 *         ROTATE_270; this Symmetry otherwise
+	 */
+	public Symmetry inverse() {
+		switch (this) {
+		case ROTATE_90:
+			return ROTATE_270;
+		case ROTATE_270:
+			return ROTATE_90;
+		default:
+			return this;
+		}
+	}
+
+	/**
+	 * Checks whether this Symmetry swaps the dimensions of a Tray.
+	 * 
+	 * @return whether this Symmetry swaps the dimensions of a Tray
+	 */
+	public boolean transposes() {
+		return transposes;
+	}
+
+	/**
+	 * Returns the number of rows of a Tray with the given dimensions once this
+	 * Symmetry is applied.
+	 * 
+	 * @param rowSize
+	 *            - the number of rows of the Tray
+	 * @param colSize
+	 *            - the number of columns of the Tray
+	 * @return the number of rows of the Tray once this Symmetry is applied
+	 */
+	public int rowSize(int rowSize, int colSize) {
+		return transposes ? colSize : rowSize;
+	}
+
+	/**
+	 * Returns the number of columns of a Tray with the given dimensions once
+	 * this Symmetry is applied.
+	 * 
+	 * @param rowSize
+	 *            - the number of rows of the Tray
+	 * @param colSize
+	 *            - the number of columns of the Tray
+	 * @return the number of columns of the Tray once this Symmetry is applied
+	 */
+	public int colSize(int rowSize, int colSize) {
+		return transposes ? rowSize : colSize;
+	}
+
+	/**
+	 * Returns the image of the given Point of a Tray with the given
+	 * dimensions.
+	 * 
+	 * @param p
+	 *            - a Point within the Tray
+	 * @param rowSize
+	 *            - the number of rows of the Tray
+	 * @param colSize
+	 *            - the number of columns of the Tray
+	 * @return the image of p
+	 * @throws IndexOutOfBoundsException
+	 *             when p is not within the Tray, or the Point pool does not
+	 *             cover the image of p
+	 * @throws NullPointerException
+	 *             when p is null
+	 */
+	public Point apply(Point p, int rowSize, int colSize) {
+		int row = transposes ? p.colIdx : p.rowIdx;
+		int col = transposes ? p.rowIdx : p.colIdx;
+		if (flipsRows) {
+			row = rowSize(rowSize, colSize) - 1 - row;
+		}
+		if (flipsColumns) {
+			col = colSize(rowSize, colSize) - 1 - col;
+		}
+		return Point.getInstance(row, col);
+	}
+
+	/**
+	 * Returns the image of the given Block of a Tray with the given
+	 * dimensions.
+	 * 
+	 * @param b
+	 *            - a Block within the Tray
+	 * @param rowSize
+	 *            - the number of rows of the Tray
+	 * @param colSize
+	 *            - the number of columns of the Tray
+	 * @return the Block that covers the images of the Points of b
+	 * @throws IndexOutOfBoundsException
+	 *             when b is not within the Tray, or the Point pool does not
+	 *             cover the image of b
+	 * @throws NullPointerException
+	 *             when b is null
+	 */
+	public Block apply(Block b, int rowSize, int colSize) {
+		Point ul = b.getUpperLeft();
+		Point upperLeft = Point.getInstance(
+				imageRow(ul.rowIdx, ul.colIdx, b.height, b.width, rowSize,
+						colSize),
+				imageCol(ul.rowIdx, ul.colIdx, b.height, b.width, rowSize,
+						colSize));
+		return transposes ? Block.getInstance(upperLeft, b.height, b.width)
+				: Block.getInstance(upperLeft, b.width, b.height);
+	}
+
+	/**
+	 * Returns the row index of the upper left corner of the image of the
+	 * Block with the given upper left corner and size, within a Tray with the
+	 * given dimensions. Unlike <b>apply(Block, int, int)</b>, this method
+	 * obtains neither a Point nor a Block.
+	 * 
+	 * @param row
+	 *            - the row index of the upper left corner of the Block
+	 * @param col
+	 *            - the column index of the upper left corner of the Block
+	 * @param height
+	 *            - the height of the Block
+	 * @param width
+	 *            - the width of the Block
+	 * @param rowSize
+	 *            - the number of rows of the Tray
+	 * @param colSize
+	 *            - the number of columns of the Tray
+	 * @return the row index of the upper left corner of the image
+	 */
+	public int imageRow(int row, int col, int height, int width, int rowSize,
+			int colSize) {
+		if (transposes) {
+			row = col;
+			height = width;
+		}
+		return flipsRows ? rowSize(rowSize, colSize) - row - height : row;
+	}
+
+	/**
+	 * Returns the column index of the upper left corner of the image of the
+	 * Block with the given upper left corner and size, within a Tray with the
+	 * given dimensions (see <b>imageRow</b>).
+	 * 
+	 * @param row
+	 *            - the row index of the upper left corner of the Block
+	 * @param col
+	 *            - the column index of the upper left corner of the Block
+	 * @param height
+	 *            - the height of the Block
+	 * @param width
+	 *            - the width of the Block
+	 * @param rowSize
+	 *            - the number of rows of the Tray
+	 * @param colSize
+	 *            - the number of columns of the Tray
+	 * @return the column index of the upper left corner of the image
+	 */
+	public int imageCol(int row, int col, int height, int width, int rowSize,
+			int colSize) {
+		if (transposes) {
+			col = row;
+			width = height;
+		}
+		return flipsColumns ? colSize(rowSize, colSize) - col - width : col;
+	}
+
+	/**
+	 * Returns the image of the given Direction, i.e. the Direction in which
+	 * the image of a Block moves when the Block moves in d.
+	 * 
+	 * @param d
+	 *            - the Direction
+	 * @return the image of d
+	 * @throws NullPointerException
+	 *             when d is null
+	 */
+	public Direction apply(Direction d) {
+		int dRow = (d == Direction.DOWN) ? 1 : (d == Direction.UP) ? -1 : 0;
+		int dCol = (d == Direction.RIGHT) ? 1 : (d == Direction.LEFT) ? -1 : 0;
+		if (transposes) {
+			int tmp = dRow;
+			dRow = dCol;
+			dCol = tmp;
+		}
+		if (flipsRows) {
+			dRow = -dRow;
+		}
+		if (flipsColumns) {
+			dCol = -dCol;
+		}
+		if (dRow != 0) {
+			return dRow > 0 ? Direction.DOWN : Direction.UP;
+		}
+		return dCol > 0 ? Direction.RIGHT : Direction.LEFT;
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
@@ -0,0 +1,168 @@
+/**
+ * <p>
+ * A TranspositionTable is a fixed-capacity memo of the configurations that an
+ * iterative-deepening search has already explored, and at which depth. Unlike
+ * a ConfigurationSet, it never grows: when it is full, new configurations
+ * replace old ones, so the memory it takes is set once and for all when it is
+ * created, no matter how big the state space of the puzzle is.
+ * </p>
+ * 
+ * <p>
+ * The table is organized in buckets of two slots; a configuration can only
+ * live in the bucket selected by the hash of its encoding (see
+ * <b>Tray.encode()</b>). When both slots of a bucket are taken, a slot left
+ * over from an earlier iteration is replaced first; otherwise the slot that
+ * was reached at the greater depth is replaced, but only if the new
+ * configuration is shallower. Shallow configurations are the valuable ones,
+ * because they sit above the biggest subtrees.
+ * </p>
+ */
+public class TranspositionTable {
+
+	// ///////////////////// instance members start ///////////////////////
+
+	/**
+	 * Represents the number of <b>long</b>s in every encoding stored in this
+	 * table.
+	 */
+	private final int keyLength;
+
+	/**
+	 * Represents the number of slots in this table. Always a power of two.
+	 */
+	private final int capacity;
+
+	/**
+	 * Represents the encodings in this table. Slot i occupies the
+	 * <b>keyLength</b> words starting at index <b>i * keyLength</b>.
+	 */
+	private final long[] keys;
+
+	/**
+	 * Represents the depth at which the configuration of each slot was
+	 * reached.
+	 */
+	private final int[] depths;
+
+	/**
+	 * Represents the iteration in which the configuration of each slot was
+	 * reached. Iterations are numbered from 1; 0 marks an empty slot.
+	 */
+	private final int[] iterations;
+
+	/**
+	 * Initializes an empty table for encodings of the given length, using at
+	 * most (roughly) the given number of <b>long</b>s for the encodings.
+	 * 
+	 * @param keyLength
+	 *            - the number of <b>long</b>s in every encoding to be stored
+	 * @param maxWords
+	 *            - the memory budget of this table, in <b>long</b>s
+	 * @throws IllegalArgumentException
+	 *             when keyLength is negative or maxWords is not positive
+	 */
+	public TranspositionTable(int keyLength, int maxWords) {
+		if (keyLength < 0 || maxWords <= 0) {
+			throw new IllegalArgumentException(
+					"negative key length or non-positive budget");
+		}
+		this.keyLength = keyLength;
+		this.capacity = Math.max(2,
+				Integer.highestOneBit(maxWords / Math.max(1, keyLength)));
+		this.keys = new long[capacity * keyLength];
+		this.depths = new int[capacity];
+		this.iterations = new int[capacity];
+	}
+
+	/**
+	 * Records that the search has reached the given configuration at the given
+	 * depth during the given iteration, and tells whether the configuration can
+	 * be pruned. It can be pruned when this table remembers reaching it during
+	 * the same iteration at a depth no greater than the given one: its subtree
+	 * has already been explored with at least as much of the depth bound left.
+	 * 
+	 * @param key
+	 *            - the encoding of the configuration
+	 * @param depth
+	 *            - the depth at which the configuration has been reached
+	 * @param iteration
+	 *            - the current iteration of the search, starting from 1
+	 * @return whether the configuration can be pruned
+	 * @throws IllegalArgumentException
+	 *             when the length of key is not the length of this table's
+	 *             encodings, or when iteration is not positive
+	 * @throws NullPointerException
+	 *             when key is null
+	 */
+	public boolean visit(long[] key, int depth, int iteration) {
+		if (key.length != keyLength) {
+			throw new IllegalArgumentException("expected a key of length "
+					+ keyLength + " but got one of length " + key.length);
+		}
+		if (iteration <= 0) {
+			throw new IllegalArgumentException("non-positive iteration");
+		}
+
+		int first = hash(key) & (capacity - 2); // even slot of the bucket
+		for (int slot = first; slot <= first + 1; slot++) {
+			if (iterations[slot] != 0 && matches(slot, key)) {
+				if (iterations[slot] == iteration && depths[slot] <= depth) {
+					return true;
+				}
+				depths[slot] = depth;
+				iterations[slot] = iteration;
+				return false;
+			}
+		}
+
+		// choosing the victim within the bucket
+		int victim = first;
+		if (iterations[first] == iteration
+				&& (iterations[first + 1] != iteration || depths[first + 1] > depths[first])) {
+			victim = first + 1;
+		}
+		if (iterations[victim] != iteration || depths[victim] > depth) {
+			System.arraycopy(key, 0, keys, victim * keyLength, keyLength);
+			depths[victim] = depth;
+			iterations[victim] = iteration;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether the given slot of the table holds the given encoding.
+	 * 
+	 * @param slot
+	 *            - the slot to compare
+	 * @param key
+	 *            - the encoding to compare
+	 * @return whether the slot holds the encoding
+	 */
+	private boolean matches(int slot, long[] key) {
+		int base = slot * keyLength;
+		for (int i = 0; i < keyLength; i++) {
+			if (keys[base + i] != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a well-spread hash of the given encoding.
+	 * 
+	 * @param key
+	 *            - the encoding
+	 * @return a hash of the encoding
+	 */
+	private int hash(long[] key) {
+		long h = 0x9E3779B97F4A7C15L;
+		for (int i = 0; i < keyLength; i++) {
+			h = (h ^ key[i]) * 0xBF58476D1CE4E5B9L;
+			h ^= h >>> 31;
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+
+	// ///////////////////// instance members end ///////////////////////
+}
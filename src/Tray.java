@@ -23,23 +23,32 @@ import java.util.*;
  * </p>
  * 
  * <p>
- * A Tray implicitly makes use of two distinct data structures.
+ * A Tray implicitly makes use of three distinct data structures.
  * <ul>
  * <li>The first data structure is an <i>ArrayList</i> of Blocks. We chose to
  * use ArrayList because our puzzle solving process "looks up" Blocks a lot,
  * when it moves them around. So we needed an O(1) process for the following
  * task: given a Block index, find the Block in a Tray as quickly as possible.
  * ArrayList was the way to go.</li>
- * <li>The second data structure is a <i>HashSet</i> of the blank Points within
- * a Tray. Such a structure is necessary when our search process performs
- * <i>blank-wise</i> search (refer to Solver.java for information on blank-wise
- * search). An important aspect about this collection of blank Points is that
- * there will be a lot of searches, additions and deletions performed on this
- * collection. When a Block gets moved, some of the old blank spots will now be
- * occupied, and there will be as many new blank spots. Hence, we needed a
- * structure that can search, add and delete in O(1) time. HashSet was the way
- * to go. ArrayList does not work in this case; although search can be performed
- * in O(1), additions and deletions are O(N).</li>
+ * <li>The second data structure is a <i>bitmap</i> of the occupied Points
+ * within a Tray, packed into an array of <b>long</b>s with one bit per Point
+ * (row-major order). Such a structure is necessary when our search process
+ * performs <i>blank-wise</i> search (refer to Solver.java for information on
+ * blank-wise search). An important aspect about this collection is that it is
+ * updated every time a Block gets moved, and copied every time a Tray gets
+ * cloned. We originally used a HashSet of blank Points here, but copying that
+ * set on every clone was proportional to the area of the Tray; on a 140X140
+ * Tray that meant copying almost 20,000 hash entries per child configuration.
+ * With the bitmap, marking a row of a Block is a handful of word-level bit
+ * operations and cloning is a single <b>System.arraycopy</b> of about 300
+ * longs.</li>
+ * <li>The third data structure is an <i>owner grid</i> that maps every Point
+ * to the index of the Block occupying it. Blank-wise search keeps asking
+ * which Block sits next to a blank, and scanning every Block for the answer
+ * took O(N) time per question, which dominated on Trays crowded with
+ * hundreds of Blocks. The grid answers in O(1) time. It is only built once a
+ * Tray is first asked that question, so that block-wise search does not pay
+ * for copying it on every clone.</li>
  * </ul>
  * </p>
  * <p>
@@ -105,22 +114,93 @@ public class Tray implements Cloneable {
 	public final int numBlocks;
 
 	/**
-	 * Represents the set of blank Points that this Tray configuration currently
-	 * contains. This set is automatically updated every time a Block gets
-	 * moved. The reference to the set is final, but the contents within the set
-	 * may be changed.
+	 * Represents the occupancy bitmap of this Tray configuration. The Point at
+	 * (r, c) corresponds to bit <b>r * colSize + c</b>, which lives in word
+	 * <b>(r * colSize + c) / 64</b> of this array. A set bit means the Point is
+	 * occupied by a Block; a cleared bit means the Point is blank. Bits beyond
+	 * rowSize*colSize in the last word are always cleared. This bitmap is
+	 * automatically updated every time a Block gets moved. The reference to
+	 * the array is final, but the contents within the array may be changed.
 	 */
-	private final HashSet<Point> blanksSet;
+	private final long[] occupied;
+
+	/**
+	 * <p>
+	 * Represents the owner grid of this Tray configuration: the Point at (r, c)
+	 * corresponds to element <b>r * colSize + c</b>, which holds the index of
+	 * the Block occupying the Point, or -1 if the Point is blank. It lets
+	 * <b>findBlockContaining</b> find a Block in O(1) time instead of asking
+	 * every Block whether it contains the Point. This grid is automatically
+	 * updated every time a Block gets moved; since a move only changes the
+	 * owners of the leading and trailing edges of the moved Block, that
+	 * takes time proportional to the edge.
+	 * </p>
+	 * 
+	 * <p>
+	 * Unlike the occupancy bitmap, the grid costs a whole <b>int</b> per
+	 * Point, and it is only needed by blank-wise search. So it is
+	 * <b>null</b> until <b>findBlockContaining</b> is first called on this
+	 * Tray; from then on it is kept up to date and copied along with every
+	 * clone. Block-wise search on a large, sparse Tray never pays for it.
+	 * </p>
+	 */
+	private int[] owners;
 
 	/**
 	 * Represents the number of blank spots in this Tray. Since the number of
 	 * blank spots within a Tray never changes, it makes sense to store this
 	 * value in a <b>final</b> instance variable, for the sake of fast and
-	 * efficient access (especially compared to calling <b>blanksSet.size()</b>
-	 * every time).
+	 * efficient access (especially compared to counting the cleared bits of
+	 * <b>occupied</b> every time).
 	 */
 	public final int numBlanks;
 
+	/**
+	 * Represents the indices of this Tray's Blocks, grouped by shape class
+	 * (ordered by <b>Block.shapeId()</b>). Since a Block never changes its shape and never
+	 * changes its index in <b>blocksList</b>, this order is computed once by
+	 * the public constructor and shared by every clone. It is used by
+	 * <b>encode()</b>.
+	 */
+	private final int[] shapeOrder;
+
+	/**
+	 * Represents the boundaries of the shape groups within <b>shapeOrder</b>.
+	 * The indices of the Blocks of the g-th shape are stored in
+	 * <b>shapeOrder</b> from <b>shapeGroupStart[g]</b> (inclusive) to
+	 * <b>shapeGroupStart[g+1]</b> (exclusive). Shared by every clone.
+	 */
+	private final int[] shapeGroupStart;
+
+	/**
+	 * Represents the collection of desired goal Blocks given to
+	 * <b>setGoal</b>, or <b>null</b> if no goal has been set. Shared by every
+	 * clone.
+	 */
+	private Collection<Block> goal;
+
+	/**
+	 * Represents the distinct Blocks of <b>goal</b>, indexed for O(1) lookup,
+	 * or <b>null</b> if no goal has been set. Shared by every clone.
+	 */
+	private Set<Block> goalSet;
+
+	/**
+	 * Represents the number of this Tray's Blocks that are in
+	 * <b>goalSet</b>. No two Blocks of a Tray can be equal, so the goal is
+	 * satisfied exactly when this number reaches the size of
+	 * <b>goalSet</b>. This value is updated in O(1) time every time a Block
+	 * gets moved.
+	 */
+	private int numGoalsMet;
+
+	/**
+	 * Represents the number of bits that <b>encode()</b> uses to store the
+	 * position of a single Block. This is just enough bits to number every
+	 * Point in this Tray.
+	 */
+	private final int positionBits;
+
 	/**
 	 * <p>
 	 * Initializes an empty tray with the given dimensions and blocks,
@@ -165,19 +245,14 @@ public class Tray implements Cloneable {
 
 		int numOccupied = 0;
 
-		this.blanksSet = new HashSet<Point>();
-		// initializing blanksSet to contain all Points,
+		// a fresh bitmap has every bit cleared, i.e. every Point is blank,
 		// because no blocks have been added yet
-		for (int i = 0; i < this.rowSize; i++) {
-			Point leftEnd = Point.getInstance(i, 0);
-			Point rightEnd = Point.getInstance(i, this.colSize - 1);
-			markRegion(false, leftEnd, rightEnd);
-		}
+		this.occupied = new long[(this.rowSize * this.colSize + 63) >>> 6];
 
 		// the blocks list will be a DEEP COPY of the given collection
 		this.blocksList = new ArrayList<Block>(blocks);
 
-		// updating blanksSet to not include the occupied Points
+		// updating the bitmap to mark the occupied Points
 		for (Block b : this.blocksList) {
 			numOccupied += b.width * b.height;
 			markRegion(true, b.getUpperLeft(), b.getLowerRight());
@@ -185,6 +260,34 @@ public class Tray implements Cloneable {
 		this.numBlanks = this.rowSize * this.colSize - numOccupied;
 		this.numBlocks = this.blocksList.size();
 
+		// grouping the block indices by shape class for encode()
+		Integer[] order = new Integer[this.numBlocks];
+		for (int i = 0; i < this.numBlocks; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i, Integer j) {
+				return blocksList.get(i).shapeId() - blocksList.get(j).shapeId();
+			}
+		});
+		this.shapeOrder = new int[this.numBlocks];
+		List<Integer> groupStarts = new ArrayList<Integer>();
+		for (int k = 0; k < this.numBlocks; k++) {
+			this.shapeOrder[k] = order[k];
+			int curShape = blocksList.get(order[k]).shapeId();
+			if (k == 0 || curShape != blocksList.get(order[k - 1]).shapeId()) {
+				groupStarts.add(k);
+			}
+		}
+		groupStarts.add(this.numBlocks);
+		this.shapeGroupStart = new int[groupStarts.size()];
+		for (int g = 0; g < groupStarts.size(); g++) {
+			this.shapeGroupStart[g] = groupStarts.get(g);
+		}
+		this.positionBits = Math.max(1,
+				32 - Integer.numberOfLeadingZeros(this.rowSize * this.colSize - 1));
+
 		if (checkInvariants) {
 			isOK();
 		}
@@ -194,13 +297,12 @@ public class Tray implements Cloneable {
 	 * <p>
 	 * <i>This method is to be used in <b>clone()</b> only</i>. This method
 	 * simply deep-copies the given Tray into this Tray, without manually
-	 * setting up blanksSet. By doing so, this constructor saves a lot of time;
-	 * on a big Tray, setting up blanksSet from scratch is a very expensive
-	 * process.
+	 * setting up the occupancy bitmap. By doing so, this constructor saves a
+	 * lot of time; the bitmap is copied with a single <b>System.arraycopy</b>.
 	 * </p>
 	 * <p>
-	 * This operation runs in O(A+B) time, where A is the number of Blocks and B
-	 * is the number of blanks in this Tray.
+	 * This operation runs in O(A+W) time, where A is the number of Blocks and W
+	 * is the number of 64-bit words in the bitmap (rowSize*colSize/64).
 	 * </p>
 	 * 
 	 * @param copy
@@ -211,8 +313,21 @@ public class Tray implements Cloneable {
 		this.colSize = copy.colSize;
 		this.numBlocks = copy.numBlocks;
 		this.numBlanks = copy.numBlanks;
+		this.shapeOrder = copy.shapeOrder;
+		this.shapeGroupStart = copy.shapeGroupStart;
+		this.positionBits = copy.positionBits;
+		this.goal = copy.goal;
+		this.goalSet = copy.goalSet;
+		this.numGoalsMet = copy.numGoalsMet;
 		this.blocksList = new ArrayList<Block>(copy.blocksList);
-		this.blanksSet = new HashSet<Point>(copy.blanksSet);
+		this.occupied = new long[copy.occupied.length];
+		System.arraycopy(copy.occupied, 0, this.occupied, 0,
+				copy.occupied.length);
+		if (copy.owners != null) {
+			this.owners = new int[copy.owners.length];
+			System.arraycopy(copy.owners, 0, this.owners, 0,
+					copy.owners.length);
+		}
 	}
 
 	/**
@@ -250,7 +365,10 @@ public class Tray implements Cloneable {
 
 	/**
 	 * Returns a hash code for this Tray instance. This hash is <i>not</i>
-	 * perfect.
+	 * perfect. It sums the hash codes of the Blocks, as the hash code of a set
+	 * of them would, without building one. The search processes remember
+	 * configurations by their encodings (see <b>encode()</b>) rather than by
+	 * Tray, so this operation is not on their path.
 	 * 
 	 * @return a hash code for this Tray instance
 	 */
@@ -260,15 +378,360 @@ public class Tray implements Cloneable {
 		int result = 1;
 		result = prime * result + colSize;
 		result = prime * result + rowSize;
-		Set<Block> blockSet = new HashSet<Block>(blocksList);
-		result = prime * result + blockSet.hashCode();
+		int blockSetHash = 0;
+		for (Block b : blocksList) {
+			blockSetHash += b.hashCode();
+		}
+		result = prime * result + blockSetHash;
 		return result;
 	}
 
+	/**
+	 * Returns the number of distinct shape classes among this Tray's Blocks.
+	 * 
+	 * @return the number of distinct shape classes among this Tray's Blocks
+	 */
+	public int numShapeClasses() {
+		return shapeGroupStart.length - 1;
+	}
+
+	/**
+	 * Returns the number of <b>long</b>s in the array returned by
+	 * <b>encode()</b>. This number is the same for this Tray and every Tray
+	 * reachable from it by moves, because the Blocks within a Tray never
+	 * change.
+	 * 
+	 * @return the length of this Tray's encoding
+	 */
+	public int encodingLength() {
+		return (numBlocks * positionBits + 63) >>> 6;
+	}
+
+	/**
+	 * <p>
+	 * Returns a compact, canonical encoding of this Tray configuration. The
+	 * encoding lists the upper left position (as <b>rowIdx * colSize +
+	 * colIdx</b>) of every Block, grouped by shape class, with the positions
+	 * of each shape class sorted in ascending order. Sorting within a shape
+	 * class is what makes the encoding canonical: it forgets <i>which</i> of
+	 * several interchangeable Blocks sits where, so all the permutations of
+	 * same-shape Blocks over the same positions collapse to one encoding. Each position is packed into
+	 * <b>positionBits</b> bits, so a 4X5 Tray with ten Blocks fits in a single
+	 * <b>long</b>.
+	 * </p>
+	 * 
+	 * <p>
+	 * Two Trays reachable from each other by moves have the same encoding if
+	 * and only if they are <i>equal</i> according to <b>equals</b>. The
+	 * encoding does not say anything about the shapes themselves, so encodings
+	 * of Trays with different sets of Block shapes must not be compared. This
+	 * operation runs in O(N log N) time in the worst case, where N is the
+	 * number of Blocks in this Tray.
+	 * </p>
+	 * 
+	 * @return a compact, canonical encoding of this Tray configuration
+	 */
+	public long[] encode() {
+		return pack(sortedPositions());
+	}
+
+	/**
+	 * Returns the upper left position (as <b>rowIdx * colSize + colIdx</b>)
+	 * of every Block, grouped by shape class, with the positions of each shape
+	 * class sorted in ascending order, as encoded by <b>encode()</b>.
+	 * 
+	 * @return the sorted positions of the Blocks
+	 */
+	private int[] sortedPositions() {
+		int[] positions = new int[numBlocks];
+		for (int g = 0; g < numShapeClasses(); g++) {
+			int from = shapeGroupStart[g];
+			int to = shapeGroupStart[g + 1];
+			for (int k = from; k < to; k++) {
+				Point ul = blocksList.get(shapeOrder[k]).getUpperLeft();
+				positions[k] = ul.rowIdx * colSize + ul.colIdx;
+			}
+			Arrays.sort(positions, from, to);
+		}
+		return positions;
+	}
+
+	/**
+	 * <p>
+	 * Returns the smallest, in lexicographic order of unsigned <b>long</b>s,
+	 * among the encodings (see <b>encode()</b>) of the images of this Tray
+	 * configuration under the given Symmetries. If the Symmetries form a group
+	 * (see <b>Symmetry.preservedBy</b>), every configuration that is the image
+	 * of this one under any of them has the same encoding as this one, so a
+	 * search that compares these encodings visits only one configuration of
+	 * each such family.
+	 * </p>
+	 * 
+	 * <p>
+	 * Every Symmetry must map this Tray onto a Tray of the same dimensions and
+	 * the same Block shapes, so that the images can be encoded like the
+	 * configurations reachable from this Tray. This operation runs in O(S N log
+	 * N) time, where S is the number of Symmetries and N is the number of
+	 * Blocks in this Tray.
+	 * </p>
+	 * 
+	 * @param symmetries
+	 *            - the Symmetries whose images to encode
+	 * @return the smallest encoding among the images of this Tray under the
+	 *         given Symmetries
+	 * @throws IllegalArgumentException
+	 *             when any Symmetry maps this Tray onto a Tray of other
+	 *             dimensions or other Block shapes, or when there are no
+	 *             Symmetries
+	 * @throws NullPointerException
+	 *             when the argument is or contains null
+	 */
+	public long[] encode(Symmetry[] symmetries) {
+		if (symmetries.length == 0) {
+			throw new IllegalArgumentException("no symmetries to encode");
+		}
+		int[] positions = sortedPositions();
+		long[] smallest = null;
+		for (Symmetry s : symmetries) {
+			long[] key = pack((s == Symmetry.IDENTITY) ? positions
+					: imagePositions(s, positions));
+			if (smallest == null || compareKeys(key, smallest) < 0) {
+				smallest = key;
+			}
+		}
+		return smallest;
+	}
+
+	/**
+	 * Returns the sorted positions (see <b>sortedPositions</b>) of the image
+	 * of this Tray configuration under the given Symmetry. Since no two Blocks
+	 * share an upper left corner, the images are sorted by two stable counting
+	 * sorts, by column index and then by row index, before they are grouped by
+	 * shape class. This takes O(N+R+C) time rather than O(N log N), where R
+	 * and C are the dimensions of this Tray.
+	 * 
+	 * @param s
+	 *            - the Symmetry to apply
+	 * @param positions
+	 *            - the sorted positions of this Tray
+	 * @return the sorted positions of the image of this Tray
+	 * @throws IllegalArgumentException
+	 *             when s maps this Tray onto a Tray of other dimensions or
+	 *             other Block shapes
+	 */
+	private int[] imagePositions(Symmetry s, int[] positions) {
+		if (s.transposes() && rowSize != colSize) {
+			throw new IllegalArgumentException(s
+					+ " does not map this Tray onto itself");
+		}
+		int[] rows = new int[numBlocks];
+		int[] cols = new int[numBlocks];
+		int[] classes = new int[numBlocks];
+		for (int g = 0; g < numShapeClasses(); g++) {
+			Block b = blocksList.get(shapeOrder[shapeGroupStart[g]]);
+			int imageClass = s.transposes() ? shapeClassOf(((b.width - 1) << 16)
+					| (b.height - 1)) : g;
+			if (imageClass < 0
+					|| shapeGroupStart[imageClass + 1]
+							- shapeGroupStart[imageClass] != shapeGroupStart[g + 1]
+							- shapeGroupStart[g]) {
+				throw new IllegalArgumentException(s
+						+ " does not preserve the Block shapes of this Tray");
+			}
+			for (int k = shapeGroupStart[g]; k < shapeGroupStart[g + 1]; k++) {
+				int row = positions[k] / colSize;
+				int col = positions[k] % colSize;
+				rows[k] = s.imageRow(row, col, b.height, b.width, rowSize,
+						colSize);
+				cols[k] = s.imageCol(row, col, b.height, b.width, rowSize,
+						colSize);
+				classes[k] = imageClass;
+			}
+		}
+
+		int[] order = countingSort(rows, rowSize, countingSort(cols, colSize,
+				null));
+		int[] image = new int[numBlocks];
+		int[] next = Arrays.copyOf(shapeGroupStart, numShapeClasses());
+		for (int k : order) {
+			image[next[classes[k]]++] = rows[k] * colSize + cols[k];
+		}
+		return image;
+	}
+
+	/**
+	 * Returns the indices of the given keys, stably sorted by key.
+	 * 
+	 * @param keys
+	 *            - the keys, each between 0 (inclusive) and range (exclusive)
+	 * @param range
+	 *            - the bound on the keys
+	 * @param order
+	 *            - the order to take the indices in, or <b>null</b> for
+	 *            ascending order
+	 * @return the indices of keys, sorted by key, with ties in the order
+	 *         given
+	 */
+	private static int[] countingSort(int[] keys, int range, int[] order) {
+		int[] starts = new int[range + 1];
+		for (int key : keys) {
+			starts[key + 1]++;
+		}
+		for (int key = 0; key < range; key++) {
+			starts[key + 1] += starts[key];
+		}
+		int[] sorted = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			int k = (order == null) ? i : order[i];
+			sorted[starts[keys[k]]++] = k;
+		}
+		return sorted;
+	}
+
+	/**
+	 * Returns the shape class of the Blocks of this Tray with the given shape
+	 * identifier (see <b>Block.shapeId()</b>).
+	 * 
+	 * @param shapeId
+	 *            - the shape identifier
+	 * @return the shape class, or -1 if no Block of this Tray has that shape
+	 */
+	private int shapeClassOf(int shapeId) {
+		// the shape classes are numbered in the order of their identifiers
+		int low = 0;
+		int high = numShapeClasses() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midId = blocksList.get(shapeOrder[shapeGroupStart[mid]])
+					.shapeId();
+			if (midId < shapeId) {
+				low = mid + 1;
+			} else if (midId > shapeId) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compares two encodings of the same length in lexicographic order of
+	 * unsigned <b>long</b>s.
+	 * 
+	 * @param key1
+	 *            - the first encoding
+	 * @param key2
+	 *            - the second encoding
+	 * @return a negative number, zero or a positive number as key1 comes
+	 *         before, is equal to or comes after key2
+	 */
+	private static int compareKeys(long[] key1, long[] key2) {
+		for (int w = 0; w < key1.length; w++) {
+			int c = Long.compareUnsigned(key1[w], key2[w]);
+			if (c != 0) {
+				return c;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Packs the given positions, grouped by shape class as in <b>encode()</b>,
+	 * into <b>positionBits</b> bits each.
+	 * 
+	 * @param positions
+	 *            - the position of every Block, as <b>rowIdx * colSize +
+	 *            colIdx</b>
+	 * @return the packed positions
+	 */
+	private long[] pack(int[] positions) {
+		long[] key = new long[encodingLength()];
+		int bit = 0;
+		for (int k = 0; k < numBlocks; k++) {
+			long pos = positions[k];
+			int w = bit >>> 6;
+			int offset = bit & 63;
+			key[w] |= pos << offset;
+			if (offset + positionBits > 64) { // straddles two words
+				key[w + 1] |= pos >>> (64 - offset);
+			}
+			bit += positionBits;
+		}
+		return key;
+	}
+
+	/**
+	 * <p>
+	 * Returns a new Tray that holds this Tray's Blocks at the positions given
+	 * by the given encoding, i.e. the reverse of <b>encode()</b>. The encoding
+	 * must have been returned by <b>encode()</b> on this Tray or on a Tray
+	 * reachable from it by moves.
+	 * </p>
+	 * 
+	 * <p>
+	 * Since an encoding does not say which of several same-shape Blocks sits
+	 * where, the returned Tray may hold those Blocks under different indices
+	 * than the Tray that was encoded; it is <i>equal</i> to that Tray all the
+	 * same. This operation runs in O(A+W) time plus the time needed to mark
+	 * the Blocks in the occupancy bitmap, where A is the number of Blocks and
+	 * W is the number of 64-bit words in the bitmap.
+	 * </p>
+	 * 
+	 * @param key
+	 *            - the encoding to decode
+	 * @return a new Tray configuration with the given encoding
+	 * @throws IllegalArgumentException
+	 *             when the length of key is not the length of this Tray's
+	 *             encoding
+	 * @throws IllegalStateException
+	 *             when an invariant of the new Tray has been violated (only
+	 *             when Tray.checkInvariants==true)
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public Tray decode(long[] key) {
+		if (key.length != encodingLength()) {
+			throw new IllegalArgumentException("expected a key of length "
+					+ encodingLength() + " but got one of length "
+					+ key.length);
+		}
+		Tray decoded = new Tray(this);
+		Arrays.fill(decoded.occupied, 0L);
+		decoded.owners = null; // rebuilt on demand
+
+		long mask = (1L << positionBits) - 1;
+		int bit = 0;
+		for (int k = 0; k < numBlocks; k++) {
+			int w = bit >>> 6;
+			int offset = bit & 63;
+			long pos = key[w] >>> offset;
+			if (offset + positionBits > 64) { // straddles two words
+				pos |= key[w + 1] << (64 - offset);
+			}
+			pos &= mask;
+			bit += positionBits;
+
+			Block b = blocksList.get(shapeOrder[k]).relocate(
+					Point.getInstance((int) (pos / colSize), (int) (pos % colSize)));
+			decoded.blocksList.set(shapeOrder[k], b);
+			decoded.markRegion(true, b.getUpperLeft(), b.getLowerRight());
+		}
+
+		if (goalSet != null) {
+			decoded.countGoalsMet();
+		}
+		if (checkInvariants) {
+			decoded.isOK();
+		}
+		return decoded;
+	}
+
 	/**
 	 * Two Trays are considered equal when the Trays have the same dimensions,
 	 * contain the same number of blocks, and contains the same size blocks at
-	 * the same positions.
+	 * the same positions. Trays with different occupancy bitmaps are rejected
+	 * without building any set.
 	 * 
 	 * @return whether the other Object is equal to this Tray
 	 */
@@ -285,6 +748,10 @@ public class Tray implements Cloneable {
 			return false;
 		if (colSize != other.colSize)
 			return false;
+		if (numBlocks != other.numBlocks)
+			return false;
+		if (!Arrays.equals(occupied, other.occupied))
+			return false;
 
 		// convert the lists of blocks into sets and compare the sets
 		Set<Block> thisBlockSet = new HashSet<Block>(blocksList);
@@ -307,9 +774,14 @@ public class Tray implements Cloneable {
 	 * <li>All four endpoints of every Block must be inside this Tray.</li>
 	 * <li>No Block must collide with the other Blocks in this Tray.</li>
 	 * <li><b>numBlocks</b> must equal <b>blocksList.size()</b>.</li>
-	 * <li><b>numBlanks</b> must equal <b>blanksSet.size()</b>.</li>
+	 * <li><b>numBlanks</b> must equal the number of cleared bits in
+	 * <b>occupied</b>.</li>
 	 * <li>The sum of the areas of every Block, combined with numBlanks, must
 	 * equal this Tray's area.</li>
+	 * <li>If the owner grid has been built, every Point must be owned by the
+	 * Block containing it, or by -1 if it is blank.</li>
+	 * <li>If a goal has been set, <b>numGoalsMet</b> must equal the number of
+	 * Blocks in the goal.</li>
 	 * </ul>
 	 * 
 	 * @throws IllegalStateException
@@ -384,10 +856,14 @@ public class Tray implements Cloneable {
 					"numBlocks must equal blocksList.size()");
 		}
 
-		// numBlanks must equal blanksSet.size()
-		if (numBlanks != blanksSet.size()) {
+		// numBlanks must equal the number of cleared bits in occupied
+		int numOccupied = 0;
+		for (long word : occupied) {
+			numOccupied += Long.bitCount(word);
+		}
+		if (numBlanks != this.colSize * this.rowSize - numOccupied) {
 			throw new IllegalStateException(
-					"numBlanks must equal blanksSet.size()");
+					"numBlanks must equal the number of cleared bits in occupied");
 		}
 
 		// The sum of the areas of every Block, combined with numBlanks, must
@@ -396,12 +872,47 @@ public class Tray implements Cloneable {
 			throw new IllegalStateException(
 					"The sum of the areas of every Block, combined with numBlanks, must equal this Tray's area.");
 		}
+
+		// If the owner grid has been built, every Point must be owned by the
+		// Block containing it, or by -1 if it is blank.
+		if (owners != null) {
+			int[] expected = new int[owners.length];
+			Arrays.fill(expected, -1);
+			for (int i = 0; i < numBlocks; i++) {
+				Block b = getBlock(i);
+				for (int r = b.getUpperLeft().rowIdx; r <= b.getLowerRight().rowIdx; r++) {
+					for (int c = b.getUpperLeft().colIdx; c <= b
+							.getLowerRight().colIdx; c++) {
+						expected[r * colSize + c] = i;
+					}
+				}
+			}
+			if (!Arrays.equals(owners, expected)) {
+				throw new IllegalStateException(
+						"every Point must be owned by the Block containing it, or by -1 if it is blank");
+			}
+		}
+
+		// If a goal has been set, numGoalsMet must equal the number of Blocks
+		// in the goal.
+		if (goalSet != null) {
+			int met = 0;
+			for (Block b : blocksList) {
+				if (goalSet.contains(b)) {
+					met++;
+				}
+			}
+			if (met != numGoalsMet) {
+				throw new IllegalStateException(
+						"numGoalsMet must equal the number of Blocks in the goal");
+			}
+		}
 	}
 
 	/**
-	 * Returns a deep copy of this Tray. This operation runs in O(A+B) time,
-	 * where A is the number of Blocks and B is the number of blanks in this
-	 * Tray.
+	 * Returns a deep copy of this Tray. This operation runs in O(A+W) time,
+	 * where A is the number of Blocks and W is the number of 64-bit words in
+	 * the occupancy bitmap.
 	 */
 	@Override
 	public Tray clone() {
@@ -425,6 +936,68 @@ public class Tray implements Cloneable {
 		return blocksList.contains(b);
 	}
 
+	/**
+	 * Sets the desired goal Blocks that this Tray, and every Tray cloned from
+	 * it from now on, keeps track of. From then on, <b>isGoalMet()</b> tells
+	 * in O(1) time whether this Tray contains every goal Block. The goal is
+	 * indexed once here, in O(N+G) time, where N is the number of Blocks in
+	 * this Tray and G is the number of goal Blocks.
+	 * 
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @throws NullPointerException
+	 *             when the argument is null
+	 */
+	public void setGoal(Collection<Block> desiredBlocks) {
+		if (desiredBlocks == null) {
+			throw new NullPointerException();
+		}
+		this.goal = desiredBlocks;
+		this.goalSet = new HashSet<Block>(desiredBlocks);
+		countGoalsMet();
+	}
+
+	/**
+	 * Checks whether the given collection is the goal that this Tray keeps
+	 * track of, i.e. the very collection last given to <b>setGoal</b>.
+	 * 
+	 * @param desiredBlocks
+	 *            - the collection of blocks in the desired final Tray
+	 *            configuration
+	 * @return whether <b>isGoalMet()</b> answers for the given collection
+	 */
+	public boolean tracksGoal(Collection<Block> desiredBlocks) {
+		return goal != null && goal == desiredBlocks;
+	}
+
+	/**
+	 * Checks whether this Tray contains every goal Block given to
+	 * <b>setGoal</b>. This operation runs in O(1) time.
+	 * 
+	 * @return whether this Tray contains every goal Block
+	 * @throws IllegalStateException
+	 *             when no goal has been set
+	 */
+	public boolean isGoalMet() {
+		if (goalSet == null) {
+			throw new IllegalStateException("no goal has been set");
+		}
+		return numGoalsMet == goalSet.size();
+	}
+
+	/**
+	 * Recounts <b>numGoalsMet</b> from scratch.
+	 */
+	private void countGoalsMet() {
+		numGoalsMet = 0;
+		for (Block b : blocksList) {
+			if (goalSet.contains(b)) {
+				numGoalsMet++;
+			}
+		}
+	}
+
 	/**
 	 * Returns the Block with the given index from the list of Blocks that this
 	 * Tray currently contains. This operation runs in O(1) time.
@@ -441,10 +1014,108 @@ public class Tray implements Cloneable {
 		return blocksList.get(blockIdx);
 	}
 
+	/**
+	 * Checks whether the Block specified by blockIdx can be moved in the given
+	 * direction by one, i.e. whether its <i>leading edge</i> (the row or
+	 * column of Points that it would newly occupy) is inside this Tray and
+	 * blank. This method neither allocates nor throws for an illegal move,
+	 * so the search process can reject a move before cloning a Tray for it.
+	 * This operation runs in O(L) time, where L is the length of the leading
+	 * edge.
+	 * 
+	 * @param blockIdx
+	 *            - the unique index of a Block within this Tray's list of
+	 *            Blocks
+	 * @param d
+	 *            - the Direction in which the Block would be moved
+	 * @return whether <b>moveBlock(blockIdx, d)</b> would succeed
+	 * @throws IndexOutOfBoundsException
+	 *             when the given index is smaller than zero and larger than or
+	 *             equal to the number of Blocks in this Tray
+	 * @throws NullPointerException
+	 *             when d is null
+	 */
+	public boolean canMove(int blockIdx, Direction d) {
+		Block b = getBlock(blockIdx);
+		int top = b.getUpperLeft().rowIdx;
+		int left = b.getUpperLeft().colIdx;
+		int bottom = top + b.height - 1;
+		int right = left + b.width - 1;
+
+		switch (d) {
+		case UP:
+			return top > 0 && isRowBlank(top - 1, left, right);
+		case RIGHT:
+			return right < colSize - 1 && isColumnBlank(right + 1, top, bottom);
+		case DOWN:
+			return bottom < rowSize - 1 && isRowBlank(bottom + 1, left, right);
+		default:
+			return left > 0 && isColumnBlank(left - 1, top, bottom);
+		}
+	}
+
+	/**
+	 * Checks whether the Points of the given row from column <b>from</b> to
+	 * column <b>to</b> (inclusive) are all blank, one 64-bit word of the
+	 * occupancy bitmap at a time.
+	 * 
+	 * @param row
+	 *            - the row to check
+	 * @param from
+	 *            - the first column to check
+	 * @param to
+	 *            - the last column to check
+	 * @return whether the Points are all blank
+	 */
+	private boolean isRowBlank(int row, int from, int to) {
+		int fromBit = row * colSize + from;
+		int toBit = row * colSize + to;
+		int fromWord = fromBit >>> 6;
+		int toWord = toBit >>> 6;
+		// shifts of a long only use the low six bits of the shift distance
+		long fromMask = -1L << fromBit;
+		long toMask = -1L >>> (63 - (toBit & 63));
+		for (int w = fromWord; w <= toWord; w++) {
+			long mask = -1L;
+			if (w == fromWord) {
+				mask &= fromMask;
+			}
+			if (w == toWord) {
+				mask &= toMask;
+			}
+			if ((occupied[w] & mask) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the Points of the given column from row <b>from</b> to
+	 * row <b>to</b> (inclusive) are all blank.
+	 * 
+	 * @param col
+	 *            - the column to check
+	 * @param from
+	 *            - the first row to check
+	 * @param to
+	 *            - the last row to check
+	 * @return whether the Points are all blank
+	 */
+	private boolean isColumnBlank(int col, int from, int to) {
+		for (int bit = from * colSize + col; bit <= to * colSize + col; bit += colSize) {
+			if ((occupied[bit >>> 6] & (1L << bit)) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Moves the Block specified by blockIdx in the given direction <b>by
 	 * one</b>. This method is the <i>only</i> public setter method of this
-	 * class.
+	 * class. The move is checked with <b>canMove</b> before anything is
+	 * changed, so this Tray is left untouched when the move is illegal.
 	 * 
 	 * @param blockIdx
 	 *            - the unique index of a Block within this Tray's list of
@@ -464,69 +1135,74 @@ public class Tray implements Cloneable {
 	 *             when d is null
 	 */
 	public void moveBlock(int blockIdx, Direction d) {
+		if (!canMove(blockIdx, d)) {
+			throw new IllegalArgumentException(
+					"block cannot be moved to the new location");
+		}
+
 		Block oldBlock = getBlock(blockIdx);
 		Point oldUL = oldBlock.getUpperLeft();
 		Point oldUR = oldBlock.getUpperRight();
 		Point oldLL = oldBlock.getLowerLeft();
 		Point oldLR = oldBlock.getLowerRight();
 
-		switch (d) { // mark old row/col as blank
+		Point trailingFrom, trailingTo;
+		switch (d) { // old row/col to be marked as blank
 		case UP:
-			markRegion(false, oldLL, oldLR);
+			trailingFrom = oldLL;
+			trailingTo = oldLR;
 			break;
 		case RIGHT:
-			markRegion(false, oldUL, oldLL);
+			trailingFrom = oldUL;
+			trailingTo = oldLL;
 			break;
 		case DOWN:
-			markRegion(false, oldUL, oldUR);
+			trailingFrom = oldUL;
+			trailingTo = oldUR;
 			break;
 		default:
-			markRegion(false, oldUR, oldLR);
-		}
-
-		Block newBlock = null;
-		try {
-			newBlock = oldBlock.relocate(oldUL.go(d));
-		} catch (IndexOutOfBoundsException ioobe) { // caused by go()
-			throw new IllegalArgumentException(
-					"block cannot be moved to the new location");
-		}
-
-		// checking whether the Block will go out of this Tray's bounds
-		if (!isValidPoint(newBlock.getUpperLeft())
-				|| !isValidPoint(newBlock.getLowerRight())) {
-			throw new IllegalArgumentException(
-					"block cannot be moved to the new location");
+			trailingFrom = oldUR;
+			trailingTo = oldLR;
 		}
+		markRegion(false, trailingFrom, trailingTo);
+		markOwners(-1, trailingFrom, trailingTo);
 
-		// checking whether the Block will collide with other Blocks
-		for (Block o : blocksList) {
-			if (o != oldBlock && newBlock.collidesWith(o)) {
-				throw new IllegalArgumentException(
-						"block cannot be moved to the new location");
+		Block newBlock = oldBlock.relocate(oldUL.go(d));
+		blocksList.set(blockIdx, newBlock); // moving the block
+		if (goalSet != null) {
+			if (goalSet.contains(oldBlock)) {
+				numGoalsMet--;
+			}
+			if (goalSet.contains(newBlock)) {
+				numGoalsMet++;
 			}
 		}
 
-		blocksList.set(blockIdx, newBlock); // moving the block
-
 		Point newUL = newBlock.getUpperLeft();
 		Point newUR = newBlock.getUpperRight();
 		Point newLL = newBlock.getLowerLeft();
 		Point newLR = newBlock.getLowerRight();
 
-		switch (d) { // mark new row/col as occupied
+		Point leadingFrom, leadingTo;
+		switch (d) { // new row/col to be marked as occupied
 		case UP:
-			markRegion(true, newUL, newUR);
+			leadingFrom = newUL;
+			leadingTo = newUR;
 			break;
 		case RIGHT:
-			markRegion(true, newUR, newLR);
+			leadingFrom = newUR;
+			leadingTo = newLR;
 			break;
 		case DOWN:
-			markRegion(true, newLL, newLR);
+			leadingFrom = newLL;
+			leadingTo = newLR;
 			break;
 		default:
-			markRegion(true, newUL, newLL);
+			leadingFrom = newUL;
+			leadingTo = newLL;
 		}
+		markRegion(true, leadingFrom, leadingTo);
+		markOwners(blockIdx, leadingFrom, leadingTo);
 
 		if (checkInvariants) {
 			isOK();
@@ -558,30 +1234,183 @@ public class Tray implements Cloneable {
 					"lowerRight is not on the lower right side of upperLeft");
 		}
 		for (int i = upperLeft.rowIdx; i <= lowerRight.rowIdx; i++) {
-			for (int j = upperLeft.colIdx; j <= lowerRight.colIdx; j++) {
-				Point curPoint = Point.getInstance(i, j);
-				if (toOccupied) {
-					blanksSet.remove(curPoint);
-				} else {
-					blanksSet.add(curPoint);
-				}
+			int from = i * colSize + upperLeft.colIdx;
+			int to = i * colSize + lowerRight.colIdx;
+			markBits(toOccupied, from, to);
+		}
+	}
+
+	/**
+	 * Sets or clears the bits from index <b>from</b> to index <b>to</b>
+	 * (inclusive) of the occupancy bitmap, one 64-bit word at a time.
+	 * 
+	 * @param toOccupied
+	 *            - <b>true</b> if the bits are going to be set; <b>false</b>
+	 *            if the bits are going to be cleared
+	 * @param from
+	 *            - the index of the first bit to mark
+	 * @param to
+	 *            - the index of the last bit to mark
+	 */
+	private void markBits(boolean toOccupied, int from, int to) {
+		int fromWord = from >>> 6;
+		int toWord = to >>> 6;
+		// shifts of a long only use the low six bits of the shift distance
+		long fromMask = -1L << from;
+		long toMask = -1L >>> (63 - (to & 63));
+		for (int w = fromWord; w <= toWord; w++) {
+			long mask = -1L;
+			if (w == fromWord) {
+				mask &= fromMask;
+			}
+			if (w == toWord) {
+				mask &= toMask;
+			}
+			if (toOccupied) {
+				occupied[w] |= mask;
+			} else {
+				occupied[w] &= ~mask;
 			}
 		}
 	}
 
 	/**
-	 * Returns an iterator over all blank Points in this Tray.
+	 * Sets the owner of every Point of the given region in the owner grid to
+	 * the given Block index. Nothing happens if the owner grid has not been
+	 * built.
+	 * 
+	 * @param owner
+	 *            - the index of the Block occupying the region, or -1 if the
+	 *            region is becoming blank
+	 * @param upperLeft
+	 *            - the upper left corner of the region
+	 * @param lowerRight
+	 *            - the lower right corner of the region
+	 * @throws NullPointerException
+	 *             when any Point is null
+	 */
+	private void markOwners(int owner, Point upperLeft, Point lowerRight) {
+		if (owners == null) {
+			return;
+		}
+		for (int i = upperLeft.rowIdx; i <= lowerRight.rowIdx; i++) {
+			int from = i * colSize + upperLeft.colIdx;
+			int to = i * colSize + lowerRight.colIdx;
+			Arrays.fill(owners, from, to + 1, owner);
+		}
+	}
+
+	/**
+	 * Returns an iterator over all blank Points in this Tray. The iterator
+	 * walks the cleared bits of the occupancy bitmap word by word, so fully
+	 * occupied stretches of this Tray are skipped 64 Points at a time.
 	 * 
 	 * @return an iterator over all blank Points in this Tray
 	 */
 	public Iterator<Point> blanksIterator() {
-		return blanksSet.iterator();
+		return new BlanksIterator();
+	}
+
+	/**
+	 * Returns the index (<b>rowIdx * colSize + colIdx</b>) of the first blank
+	 * Point of this Tray whose index is not smaller than the given one, or -1
+	 * if there is none. Unlike <b>blanksIterator()</b>, this method keeps no
+	 * state between calls, so a search may modify this Tray in between as
+	 * long as it restores it before asking for the next blank. Fully occupied
+	 * stretches of this Tray are skipped 64 Points at a time.
+	 * 
+	 * @param from
+	 *            - the index to start searching at
+	 * @return the index of the first blank Point at or after from, or -1
+	 */
+	public int nextBlank(int from) {
+		int area = rowSize * colSize;
+		if (from < 0) {
+			from = 0;
+		}
+		if (from >= area) {
+			return -1;
+		}
+		int w = from >>> 6;
+		long blanks = ~occupied[w] & (-1L << from);
+		while (blanks == 0) {
+			if (++w == occupied.length) {
+				return -1;
+			}
+			blanks = ~occupied[w];
+		}
+		int bit = (w << 6) + Long.numberOfTrailingZeros(blanks);
+		return bit < area ? bit : -1;
+	}
+
+	/**
+	 * An iterator over the cleared bits of the occupancy bitmap. The iterator
+	 * reflects the bitmap at the time of its creation; it should not be used
+	 * after this Tray has been modified.
+	 */
+	private class BlanksIterator implements Iterator<Point> {
+
+		/**
+		 * The index of the word currently being scanned.
+		 */
+		private int wordIdx = 0;
+
+		/**
+		 * The blank bits of the current word that have not been returned yet.
+		 */
+		private long remaining = blankBitsOf(0);
+
+		@Override
+		public boolean hasNext() {
+			while (remaining == 0 && wordIdx < occupied.length - 1) {
+				wordIdx++;
+				remaining = blankBitsOf(wordIdx);
+			}
+			return remaining != 0;
+		}
+
+		@Override
+		public Point next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int bit = (wordIdx << 6) + Long.numberOfTrailingZeros(remaining);
+			remaining &= remaining - 1; // clears the lowest set bit
+			return Point.getInstance(bit / colSize, bit % colSize);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Returns the bits of the given word that represent blank Points,
+		 * excluding the unused bits past the end of this Tray.
+		 * 
+		 * @param w
+		 *            - the index of the word
+		 * @return the blank bits of the given word
+		 */
+		private long blankBitsOf(int w) {
+			if (w >= occupied.length) {
+				return 0;
+			}
+			long blanks = ~occupied[w];
+			int area = rowSize * colSize;
+			if (w == occupied.length - 1 && (area & 63) != 0) {
+				blanks &= -1L >>> (64 - (area & 63));
+			}
+			return blanks;
+		}
 	}
 
 	/**
 	 * Returns the unique index of the Block in this Tray that contains the
 	 * given Point. If there is no such Block, -1 is returned. This operation
-	 * runs in O(N) time, where N is the number of Blocks in this Tray.
+	 * runs in O(1) time, except for the first call on a Tray whose owner grid
+	 * has not been built yet (see <b>owners</b>), which takes O(A) time where
+	 * A is the area of this Tray.
 	 * 
 	 * @param p
 	 *            - the Point to search for
@@ -591,13 +1420,56 @@ public class Tray implements Cloneable {
 	 *             when the argument is null
 	 */
 	public int findBlockContaining(Point p) {
-		for (int i = 0; i < blocksList.size(); i++) {
-			Block b = getBlock(i);
-			if (b.containsPoint(p)) {
-				return i;
+		if (!isValidPoint(p)) {
+			return -1;
+		}
+		if (owners == null) {
+			owners = new int[rowSize * colSize];
+			Arrays.fill(owners, -1);
+			for (int i = 0; i < numBlocks; i++) {
+				Block b = getBlock(i);
+				markOwners(i, b.getUpperLeft(), b.getLowerRight());
 			}
 		}
-		return -1;
+		return owners[p.rowIdx * colSize + p.colIdx];
+	}
+
+	/**
+	 * Returns the unique index of the Block in this Tray that contains the
+	 * Point next to the given Point in the given direction. If that Point is
+	 * outside this Tray, or if there is no such Block, -1 is returned; unlike
+	 * <b>Point.go</b>, this method never throws for a Point on the border of
+	 * this Tray.
+	 * 
+	 * @param p
+	 *            - the Point to start from
+	 * @param d
+	 *            - the Direction of the Point to search for
+	 * @return the unique index of the Block in this Tray that contains the
+	 *         Point next to p in direction d; if there is no such Block, -1 is
+	 *         returned
+	 * @throws NullPointerException
+	 *             when any argument is null
+	 */
+	public int findBlockNextTo(Point p, Direction d) {
+		switch (d) {
+		case UP:
+			if (p.rowIdx == 0)
+				return -1;
+			break;
+		case RIGHT:
+			if (p.colIdx >= colSize - 1)
+				return -1;
+			break;
+		case DOWN:
+			if (p.rowIdx >= rowSize - 1)
+				return -1;
+			break;
+		default:
+			if (p.colIdx == 0)
+				return -1;
+		}
+		return findBlockContaining(p.go(d));
 	}
 
 	// ///////////////////// instance members end //////////////////////